@@ -2,8 +2,8 @@ import ru.spbau.kozlov.slr.arithmetic.analyzers.ArithmeticExpressionsLexicalAnal
 import ru.spbau.kozlov.slr.arithmetic.parser.ArithmeticExpressionsParser;
 import ru.spbau.kozlov.slr.arithmetic.trees.ExpressionParseTree;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.ParseException;
 
 /**
@@ -12,8 +12,8 @@ import java.text.ParseException;
 public class ArithmeticMain {
 
     public static void main(String[] args) {
-        try (FileInputStream inputStream = new FileInputStream(args[0])) {
-            ArithmeticExpressionsLexicalAnalyzer lexicalAnalyzer = new ArithmeticExpressionsLexicalAnalyzer(inputStream);
+        try {
+            ArithmeticExpressionsLexicalAnalyzer lexicalAnalyzer = new ArithmeticExpressionsLexicalAnalyzer(Paths.get(args[0]));
             ExpressionParseTree tree = ArithmeticExpressionsParser.parseExpression(lexicalAnalyzer);
             System.out.println(tree.value);
         } catch (IOException e) {
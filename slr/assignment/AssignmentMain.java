@@ -0,0 +1,25 @@
+import ru.spbau.kozlov.slr.assignment.analyzers.AssignmentLexicalAnalyzer;
+import ru.spbau.kozlov.slr.assignment.parser.AssignmentParser;
+import ru.spbau.kozlov.slr.assignment.trees.StatementParseTree;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+/**
+ * @author adkozlov
+ */
+public class AssignmentMain {
+
+    public static void main(String[] args) {
+        try {
+            AssignmentLexicalAnalyzer lexicalAnalyzer = new AssignmentLexicalAnalyzer(Paths.get(args[0]));
+            StatementParseTree tree = AssignmentParser.parseStatement(lexicalAnalyzer);
+            System.out.println(tree.depth);
+        } catch (IOException e) {
+            System.err.println(e.getClass() + ": " + e.getMessage());
+        } catch (ParseException e) {
+            System.err.println(e.getClass() + ": " + e.getMessage() + ", position: " + e.getErrorOffset());
+        }
+    }
+}
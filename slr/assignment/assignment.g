@@ -0,0 +1,29 @@
+grammar Assignment
+
+package ru.spbau.kozlov.slr.assignment
+
+S Statement { int depth }
+L LeftValue { int depth }
+R RightValue { int depth }
+
+= Assign
+* Dereference
+id Identifier
+
+S -> L = R {
+  $0.depth + $2.depth
+}
+S -> R {
+  $0.depth
+}
+L -> * R {
+  $1.depth + 1
+}
+L -> id {
+  0
+}
+R -> L {
+  $0.depth
+}
+
+start S
@@ -0,0 +1,111 @@
+package ru.spbau.kozlov.slr.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Runs an operation for a number of timed warmup and measurement iterations and reports its throughput,
+ * the throughput in processed units (tokens, productions) and the bytes allocated per operation by all threads.
+ *
+ * @author adkozlov
+ */
+public class BenchmarkRunner {
+
+    public interface Operation {
+
+        Object run() throws Exception;
+    }
+
+    private static final int DEFAULT_WARMUP_ITERATIONS = 3;
+    private static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+    private static final long DEFAULT_ITERATION_MILLIS = 1000;
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    private int sink;
+
+    public BenchmarkRunner() {
+        this(DEFAULT_WARMUP_ITERATIONS, DEFAULT_MEASUREMENT_ITERATIONS, DEFAULT_ITERATION_MILLIS);
+    }
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        iterationNanos = iterationMillis * 1000000;
+    }
+
+    /**
+     * @param units    the number of units processed by an operation
+     * @param unitName the name of the units, units are not reported if null
+     */
+    public void run(String name, long units, String unitName, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(operation);
+        }
+
+        double[] throughputs = new double[measurementIterations];
+        long operationsCount = 0;
+        long allocatedBytesBefore = getAllocatedBytes();
+        for (int i = 0; i < measurementIterations; i++) {
+            long startTime = System.nanoTime();
+            long count = runIteration(operation);
+            throughputs[i] = count * 1e9 / (System.nanoTime() - startTime);
+            operationsCount += count;
+        }
+        long allocatedBytesAfter = getAllocatedBytes();
+
+        double mean = 0;
+        for (double throughput : throughputs) {
+            mean += throughput / measurementIterations;
+        }
+        double deviation = 0;
+        for (double throughput : throughputs) {
+            deviation += (throughput - mean) * (throughput - mean) / measurementIterations;
+        }
+        deviation = Math.sqrt(deviation);
+
+        StringBuilder result = new StringBuilder(String.format("%-48s %14.1f +- %10.1f ops/s", name, mean, deviation));
+        if (unitName != null) {
+            result.append(String.format("  %16.1f %s/s", mean * units, unitName));
+        }
+        if (allocatedBytesBefore >= 0 && allocatedBytesAfter >= allocatedBytesBefore) {
+            result.append(String.format("  %14.1f B/op", (double) (allocatedBytesAfter - allocatedBytesBefore) / operationsCount));
+        }
+        System.out.println(result);
+    }
+
+    private long runIteration(Operation operation) throws Exception {
+        long endTime = System.nanoTime() + iterationNanos;
+        long count = 0;
+        do {
+            sink += System.identityHashCode(operation.run());
+            count++;
+        } while (System.nanoTime() < endTime);
+        return count;
+    }
+
+    /**
+     * @return the bytes allocated by the live threads or -1 if the JVM does not count them
+     */
+    private long getAllocatedBytes() {
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        long result = 0;
+        for (long allocatedBytes : ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (allocatedBytes < 0) {
+                return -1;
+            }
+            result += allocatedBytes;
+        }
+        return result;
+    }
+
+    public int getSink() {
+        return sink;
+    }
+}
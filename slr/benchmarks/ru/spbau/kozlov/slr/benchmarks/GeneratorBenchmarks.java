@@ -0,0 +1,109 @@
+package ru.spbau.kozlov.slr.benchmarks;
+
+import ru.spbau.kozlov.slr.gramar.Automaton;
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.exceptions.AbstractConflictException;
+import ru.spbau.kozlov.slr.parser.GrammarParser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks of the grammar analysis: parsing of the grammar file, nullable, FIRST and FOLLOW sets and automata construction
+ * on the bundled grammars and on synthetic expression grammars with the given numbers of precedence levels.
+ * Usage: GeneratorBenchmarks [grammar file...], run from the slr directory to use the bundled grammars.
+ *
+ * @author adkozlov
+ */
+public class GeneratorBenchmarks {
+
+    private static final String[] BUNDLED_GRAMMARS = {"arithmetic/arithmetic.g", "boolean/boolean.g", "assignment/assignment.g"};
+    private static final int[] SYNTHETIC_LEVELS = {4, 16, 64};
+
+    public static void main(String[] args) throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (String path : args.length != 0 ? args : BUNDLED_GRAMMARS) {
+            paths.add(Paths.get(path));
+        }
+        Path directory = Files.createTempDirectory("synthetic");
+        directory.toFile().deleteOnExit();
+        for (int levels : SYNTHETIC_LEVELS) {
+            Path path = directory.resolve("synthetic" + levels + ".g");
+            path.toFile().deleteOnExit();
+            Files.write(path, getSyntheticGrammar(levels).getBytes(StandardCharsets.UTF_8));
+            paths.add(path);
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for (Path path : paths) {
+            EnrichedGrammar grammar = new GrammarParser(path).getEnrichedGrammar();
+            String name = path.getFileName().toString();
+            int productionsCount = getProductionsCount(grammar);
+
+            runner.run(name + " getEnrichedGrammar", productionsCount, "productions",
+                    () -> new GrammarParser(path).getEnrichedGrammar());
+            runner.run(name + " getGrammarInformation", productionsCount, "productions",
+                    () -> copy(grammar).getGrammarInformation());
+            grammar.getGrammarInformation();
+            for (Automaton.Type type : Automaton.Type.values()) {
+                try {
+                    Automaton.createAutomaton(grammar, type);
+                } catch (AbstractConflictException e) {
+                    System.out.println(name + " createAutomaton " + type + ": " + e.getMessage());
+                    continue;
+                }
+                runner.run(name + " createAutomaton " + type, productionsCount, "productions",
+                        () -> Automaton.createAutomaton(grammar, type));
+            }
+        }
+    }
+
+    /**
+     * @return the grammar without computed nullable, FIRST and FOLLOW sets
+     */
+    private static EnrichedGrammar copy(EnrichedGrammar grammar) {
+        ArrayList<String> symbolNames = new ArrayList<>(grammar.getSymbolsCount());
+        for (int i = 0; i < grammar.getSymbolsCount(); i++) {
+            symbolNames.add(grammar.getSymbolName(i));
+        }
+        return new EnrichedGrammar(grammar, symbolNames, grammar.getSymbolAttributes());
+    }
+
+    private static int getProductionsCount(EnrichedGrammar grammar) {
+        int result = 0;
+        for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+            result += grammar.getProductions(i).size();
+        }
+        return result;
+    }
+
+    /**
+     * Expression grammar with a binary right associative operator per level and parenthesized primaries.
+     */
+    static String getSyntheticGrammar(int levels) {
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("grammar Synthetic%d%n%npackage ru.spbau.kozlov.slr.synthetic%n%n", levels));
+
+        for (int i = 0; i < levels; i++) {
+            result.append(String.format("E%d Level%d { int value }%n", i, i));
+        }
+        result.append(String.format("P Primary { int value }%n%n"));
+
+        for (int i = 0; i < levels; i++) {
+            result.append(String.format("o%d Operator%d%n", i, i));
+        }
+        result.append(String.format("( LeftParenthesis%n) RightParenthesis%nx Variable%n%n"));
+
+        for (int i = 0; i < levels; i++) {
+            String next = i + 1 < levels ? "E" + (i + 1) : "P";
+            result.append(String.format("E%d -> %s {%n  $0.value%n}%n", i, next));
+            result.append(String.format("E%d -> %s o%d E%d {%n  $0.value + $2.value%n}%n", i, next, i, i));
+        }
+        result.append(String.format("P -> x {%n  1%n}%nP -> ( E0 ) {%n  $1.value%n}%n%nstart E0%n"));
+        return result.toString();
+    }
+}
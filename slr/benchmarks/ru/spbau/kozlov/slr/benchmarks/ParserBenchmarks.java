@@ -0,0 +1,98 @@
+package ru.spbau.kozlov.slr.benchmarks;
+
+import ru.spbau.kozlov.slr.arithmetic.analyzers.ArithmeticExpressionsLexicalAnalyzer;
+import ru.spbau.kozlov.slr.arithmetic.parser.ArithmeticExpressionsParser;
+import ru.spbau.kozlov.slr.arithmetic.parser.ArithmeticExpressionsParserContext;
+import ru.spbau.kozlov.slr.bool.analyzers.BoolExpressionLexicalAnalyzer;
+import ru.spbau.kozlov.slr.bool.parser.BoolExpressionParser;
+import ru.spbau.kozlov.slr.bool.parser.BoolExpressionParserContext;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Random;
+
+/**
+ * Throughput of the generated ArithmeticExpressions and BoolExpression lexers and parsers on large random expressions.
+ * The parsers have to be generated into the arithmetic and boolean source folders first.
+ * Usage: ParserBenchmarks [input size in bytes]
+ *
+ * @author adkozlov
+ */
+public class ParserBenchmarks {
+
+    private static final int DEFAULT_INPUT_SIZE = 1 << 20;
+    private static final int MAX_DEPTH = 16;
+    private static final long SEED = 2015;
+
+    public static void main(String[] args) throws Exception {
+        int inputSize = args.length != 0 ? Integer.parseInt(args[0]) : DEFAULT_INPUT_SIZE;
+        BenchmarkRunner runner = new BenchmarkRunner();
+
+        byte[] arithmeticInput = getInput(new Random(SEED), inputSize, new String[]{"int", "- int"}, new String[]{"+", "*"}, new String[]{"(", "- ("});
+        int arithmeticTokens = lexArithmeticExpressions(arithmeticInput);
+        ArithmeticExpressionsParserContext arithmeticContext = new ArithmeticExpressionsParserContext();
+        runner.run("ArithmeticExpressions lexer", arithmeticTokens, "tokens",
+                () -> lexArithmeticExpressions(arithmeticInput));
+        runner.run("ArithmeticExpressions parser", arithmeticTokens, "tokens",
+                () -> ArithmeticExpressionsParser.parseExpression(new ArithmeticExpressionsLexicalAnalyzer(ByteBuffer.wrap(arithmeticInput))));
+        runner.run("ArithmeticExpressions parser context", arithmeticTokens, "tokens",
+                () -> arithmeticContext.parse(ByteBuffer.wrap(arithmeticInput)));
+
+        byte[] boolInput = getInput(new Random(SEED), inputSize, new String[]{"true", "false", "! true", "! false"}, new String[]{"||", "&&"}, new String[]{"(", "! ("});
+        int boolTokens = lexBoolExpression(boolInput);
+        BoolExpressionParserContext boolContext = new BoolExpressionParserContext();
+        runner.run("BoolExpression lexer", boolTokens, "tokens",
+                () -> lexBoolExpression(boolInput));
+        runner.run("BoolExpression parser", boolTokens, "tokens",
+                () -> BoolExpressionParser.parseExpression(new BoolExpressionLexicalAnalyzer(ByteBuffer.wrap(boolInput))));
+        runner.run("BoolExpression parser context", boolTokens, "tokens",
+                () -> boolContext.parse(ByteBuffer.wrap(boolInput)));
+    }
+
+    private static int lexArithmeticExpressions(byte[] input) throws ParseException {
+        ArithmeticExpressionsLexicalAnalyzer lexicalAnalyzer = new ArithmeticExpressionsLexicalAnalyzer(ByteBuffer.wrap(input));
+        int result = 0;
+        for (; !lexicalAnalyzer.isEmpty(); lexicalAnalyzer.nextToken()) {
+            result++;
+        }
+        return result;
+    }
+
+    private static int lexBoolExpression(byte[] input) throws ParseException {
+        BoolExpressionLexicalAnalyzer lexicalAnalyzer = new BoolExpressionLexicalAnalyzer(ByteBuffer.wrap(input));
+        int result = 0;
+        for (; !lexicalAnalyzer.isEmpty(); lexicalAnalyzer.nextToken()) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * @param openings the spellings opening a parenthesized expression closed by ')'
+     */
+    static byte[] getInput(Random random, int size, String[] operands, String[] operators, String[] openings) {
+        StringBuilder result = new StringBuilder(size + 2 * MAX_DEPTH);
+        int depth = 0;
+        while (true) {
+            while (depth < MAX_DEPTH && random.nextInt(4) == 0) {
+                result.append(openings[random.nextInt(openings.length)]).append(' ');
+                depth++;
+            }
+            result.append(operands[random.nextInt(operands.length)]).append(' ');
+            while (depth > 0 && random.nextInt(3) == 0) {
+                result.append(") ");
+                depth--;
+            }
+
+            if (result.length() >= size) {
+                break;
+            }
+            result.append(operators[random.nextInt(operators.length)]).append(' ');
+        }
+        for (; depth > 0; depth--) {
+            result.append(") ");
+        }
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package ru.spbau.kozlov.slr.benchmarks;
+
+import ru.spbau.kozlov.slr.gramar.Automaton;
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.parser.GrammarParser;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reports how the grammar analysis scales with the size of synthetic grammars:
+ * the time of parsing of the grammar file, of nullable, FIRST and FOLLOW sets and of both automata,
+ * the number of states, the bytes allocated and the heap retained by the analyzed grammar.
+ * The times are the best of several runs.
+ * Usage: ScalingReport [max number of non-terminals]
+ *
+ * @author adkozlov
+ */
+public class ScalingReport {
+
+    private static final int MIN_NON_TERMINALS = 8;
+    private static final int DEFAULT_MAX_NON_TERMINALS = 512;
+    private static final int PRODUCTIONS_PER_NON_TERMINAL = 3;
+    private static final int NON_TERMINALS_PER_LEVEL = 8;
+    private static final double NULLABLE_SHARE = 0.25;
+    private static final int RUNS = 3;
+    private static final long SEED = 2015;
+
+    private static Object[] retained;
+
+    public static void main(String[] args) throws Exception {
+        int maxNonTerminals = args.length != 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_NON_TERMINALS;
+        Path directory = Files.createTempDirectory("synthetic");
+        directory.toFile().deleteOnExit();
+
+        System.out.println(String.format("%8s %8s %8s %6s %8s %10s %10s %10s %10s %12s %12s",
+                "nonterms", "terms", "prods", "depth", "states", "parse ms", "info ms", "SLR ms", "LALR ms", "alloc MB", "retained MB"));
+        for (int nonTerminals = MIN_NON_TERMINALS; nonTerminals <= maxNonTerminals; nonTerminals *= 2) {
+            int productions = PRODUCTIONS_PER_NON_TERMINAL * nonTerminals;
+            int nullable = (int) Math.round(NULLABLE_SHARE * nonTerminals);
+            int terminals = productions - nullable + nonTerminals / 2;
+            int depth = nonTerminals / NON_TERMINALS_PER_LEVEL;
+            Path path = directory.resolve("synthetic" + nonTerminals + ".g");
+            path.toFile().deleteOnExit();
+            String grammarText = new SyntheticGrammarGenerator(nonTerminals, terminals, productions, depth, NULLABLE_SHARE, SEED).generate();
+            Files.write(path, grammarText.getBytes(StandardCharsets.UTF_8));
+
+            long parseTime = Long.MAX_VALUE;
+            long informationTime = Long.MAX_VALUE;
+            long slrTime = Long.MAX_VALUE;
+            long lalrTime = Long.MAX_VALUE;
+            long allocatedBytes = 0;
+            long retainedBytes = 0;
+            int statesCount = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long usedMemoryBefore = getUsedMemory();
+                long allocatedBytesBefore = getAllocatedBytes();
+
+                long startTime = System.nanoTime();
+                EnrichedGrammar grammar = new GrammarParser(path).getEnrichedGrammar();
+                long parsedTime = System.nanoTime();
+                grammar.getGrammarInformation();
+                long analyzedTime = System.nanoTime();
+                Automaton slr = Automaton.createAutomaton(grammar, Automaton.Type.SLR);
+                long slrBuiltTime = System.nanoTime();
+                Automaton lalr = Automaton.createAutomaton(grammar, Automaton.Type.LALR);
+                long lalrBuiltTime = System.nanoTime();
+
+                allocatedBytes = getAllocatedBytes() - allocatedBytesBefore;
+                retained = new Object[]{grammar, slr, lalr};
+                retainedBytes = Math.max(0, getUsedMemory() - usedMemoryBefore);
+                retained = null;
+                statesCount = slr.getStates().size();
+                parseTime = Math.min(parseTime, parsedTime - startTime);
+                informationTime = Math.min(informationTime, analyzedTime - parsedTime);
+                slrTime = Math.min(slrTime, slrBuiltTime - analyzedTime);
+                lalrTime = Math.min(lalrTime, lalrBuiltTime - slrBuiltTime);
+            }
+
+            System.out.println(String.format("%8d %8d %8d %6d %8d %10.2f %10.2f %10.2f %10.2f %12.2f %12.2f",
+                    nonTerminals, terminals, productions, depth, statesCount,
+                    parseTime / 1e6, informationTime / 1e6, slrTime / 1e6, lalrTime / 1e6,
+                    allocatedBytes / 1e6, retainedBytes / 1e6));
+        }
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return the bytes allocated by the current thread or 0 if the JVM does not count them
+     */
+    private static long getAllocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,189 @@
+package ru.spbau.kozlov.slr.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes random SLR grammars of the given size.
+ * Every non-empty production starts with its own keyword terminal, so every state but the initial one
+ * has a single kernel item, and every nullable non-terminal is followed by a filler terminal, which never starts a production,
+ * so the empty productions can not conflict either.
+ * Non-terminals are split into levels by the nesting depth: productions refer to the non-terminals of the deeper levels
+ * and the deepest ones may refer back to the first level, the start non-terminal refers to the rest of the first level,
+ * so each non-terminal is reachable from the start one.
+ * Usage: SyntheticGrammarGenerator nonterminals terminals productions depth nullable-share output-file [seed]
+ *
+ * @author adkozlov
+ */
+public class SyntheticGrammarGenerator {
+
+    private static final int MAX_RIGHT_SIDE_LENGTH = 4;
+    private static final long DEFAULT_SEED = 2015;
+
+    private final int nonTerminalsCount;
+    private final int productionsCount;
+    private final int depth;
+    private final int fillersCount;
+    private final boolean[] nullable;
+    private final int[] levels;
+    private final List<List<Integer>> levelNonTerminals = new ArrayList<>();
+    private final Random random;
+
+    /**
+     * @param terminalsCount   the number of terminals, at least one per non-empty production and one more if there are nullable non-terminals
+     * @param productionsCount the number of productions including the empty ones
+     * @param depth            the number of levels of non-terminals
+     * @param nullableShare    the share of non-terminals having an empty production
+     */
+    public SyntheticGrammarGenerator(int nonTerminalsCount, int terminalsCount, int productionsCount, int depth, double nullableShare, long seed) {
+        int nullableCount = (int) Math.round(nullableShare * nonTerminalsCount);
+        int keywordsCount = productionsCount - nullableCount;
+        if (depth < 1 || depth > nonTerminalsCount) {
+            throw new IllegalArgumentException("Depth must be between 1 and the number of non-terminals: " + depth);
+        }
+        if (keywordsCount < nonTerminalsCount) {
+            throw new IllegalArgumentException("Each non-terminal needs a non-empty production, productions: " + productionsCount);
+        }
+        if (terminalsCount < keywordsCount || nullableCount > 0 && terminalsCount == keywordsCount) {
+            throw new IllegalArgumentException("Not enough terminals for " + keywordsCount + " keywords and fillers: " + terminalsCount);
+        }
+
+        this.nonTerminalsCount = nonTerminalsCount;
+        this.productionsCount = productionsCount;
+        this.depth = depth;
+        fillersCount = terminalsCount - keywordsCount;
+        random = new Random(seed);
+
+        levels = new int[nonTerminalsCount];
+        for (int i = 0; i < depth; i++) {
+            levelNonTerminals.add(new ArrayList<>());
+        }
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            levels[i] = (int) ((long) i * depth / nonTerminalsCount);
+            levelNonTerminals.get(levels[i]).add(i);
+        }
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, random);
+        nullable = new boolean[nonTerminalsCount];
+        for (int i = 0; i < nullableCount; i++) {
+            nullable[order.get(i)] = true;
+        }
+    }
+
+    public String generate() {
+        List<List<List<String>>> productions = new ArrayList<>();
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            productions.add(new ArrayList<>());
+            productions.get(i).add(getRightSide(levels[i], false));
+        }
+        int nullableCount = 0;
+        for (boolean isNullable : nullable) {
+            nullableCount += isNullable ? 1 : 0;
+        }
+        for (int i = nonTerminalsCount + nullableCount; i < productionsCount; i++) {
+            int nonTerminal = random.nextInt(nonTerminalsCount);
+            productions.get(nonTerminal).add(getRightSide(levels[nonTerminal], true));
+        }
+        for (int i = 1; i < nonTerminalsCount; i++) {
+            List<Integer> parents = levels[i] != 0 ? levelNonTerminals.get(levels[i] - 1) : Collections.singletonList(0);
+            List<List<String>> parentProductions = productions.get(parents.get(random.nextInt(parents.size())));
+            appendNonTerminal(parentProductions.get(random.nextInt(parentProductions.size())), i);
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append(String.format("grammar Synthetic%n%npackage ru.spbau.kozlov.slr.synthetic%n%n"));
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            result.append(String.format("N%d NonTerminal%d { int size }%n", i, i));
+        }
+        result.append(String.format("%n"));
+        for (int i = 0; i < productionsCount - nullableCount; i++) {
+            result.append(String.format("k%d Keyword%d%n", i, i));
+        }
+        for (int i = 0; i < fillersCount; i++) {
+            result.append(String.format("f%d Filler%d%n", i, i));
+        }
+        result.append(String.format("%n"));
+
+        int keyword = 0;
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (List<String> rightSide : productions.get(i)) {
+                result.append(String.format("N%d -> k%d", i, keyword++));
+                StringBuilder size = new StringBuilder("1");
+                for (int j = 0; j < rightSide.size(); j++) {
+                    String symbol = rightSide.get(j);
+                    result.append(' ').append(symbol);
+                    size.append(symbol.startsWith("N") ? String.format(" + $%d.size", j + 1) : " + 1");
+                }
+                result.append(String.format(" {%n  %s%n}%n", size));
+            }
+            if (nullable[i]) {
+                result.append(String.format("N%d -> {%n  0%n}%n", i));
+            }
+        }
+        result.append(String.format("%nstart N0%n"));
+        return result.toString();
+    }
+
+    /**
+     * @param isRecursive whether the deepest non-terminals may refer to the first level
+     */
+    private List<String> getRightSide(int level, boolean isRecursive) {
+        List<String> result = new ArrayList<>();
+        int length = random.nextInt(MAX_RIGHT_SIDE_LENGTH + 1);
+        while (result.size() < length) {
+            if (fillersCount > 0 && random.nextBoolean()) {
+                result.add(getFiller());
+            } else if (level + 1 < depth) {
+                appendNonTerminal(result, getRandomNonTerminal(level + 1 + random.nextInt(depth - level - 1)));
+            } else if (isRecursive) {
+                appendNonTerminal(result, getRandomNonTerminal(0));
+            } else if (fillersCount > 0) {
+                result.add(getFiller());
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private int getRandomNonTerminal(int level) {
+        List<Integer> nonTerminals = levelNonTerminals.get(level);
+        return nonTerminals.get(random.nextInt(nonTerminals.size()));
+    }
+
+    private void appendNonTerminal(List<String> rightSide, int nonTerminal) {
+        rightSide.add("N" + nonTerminal);
+        if (nullable[nonTerminal]) {
+            rightSide.add(getFiller());
+        }
+    }
+
+    private String getFiller() {
+        return "f" + random.nextInt(fillersCount);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("Usage: SyntheticGrammarGenerator nonterminals terminals productions depth nullable-share output-file [seed]");
+            return;
+        }
+
+        SyntheticGrammarGenerator generator = new SyntheticGrammarGenerator(Integer.parseInt(args[0]),
+                Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]),
+                Integer.parseInt(args[3]),
+                Double.parseDouble(args[4]),
+                args.length > 6 ? Long.parseLong(args[6]) : DEFAULT_SEED);
+        Files.write(Paths.get(args[5]), generator.generate().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -2,8 +2,8 @@ import ru.spbau.kozlov.slr.bool.analyzers.BoolExpressionLexicalAnalyzer;
 import ru.spbau.kozlov.slr.bool.parser.BoolExpressionParser;
 import ru.spbau.kozlov.slr.bool.trees.ExpressionParseTree;
 
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.ParseException;
 
 /**
@@ -12,8 +12,8 @@ import java.text.ParseException;
 public class BooleanMain {
 
     public static void main(String[] args) {
-        try (FileInputStream inputStream = new FileInputStream(args[0])) {
-            BoolExpressionLexicalAnalyzer lexicalAnalyzer = new BoolExpressionLexicalAnalyzer(inputStream);
+        try {
+            BoolExpressionLexicalAnalyzer lexicalAnalyzer = new BoolExpressionLexicalAnalyzer(Paths.get(args[0]));
             ExpressionParseTree tree = BoolExpressionParser.parseExpression(lexicalAnalyzer);
             System.out.println("" + tree.value);
         } catch (IOException e) {
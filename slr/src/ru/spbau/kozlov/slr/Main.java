@@ -1,25 +1,177 @@
 package ru.spbau.kozlov.slr;
 
+import ru.spbau.kozlov.slr.engine.ParserEngine;
 import ru.spbau.kozlov.slr.generator.SourceFilesGenerator;
+import ru.spbau.kozlov.slr.gramar.Automaton;
 import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
 import ru.spbau.kozlov.slr.gramar.exceptions.AbstractConflictException;
+import ru.spbau.kozlov.slr.parser.GrammarCache;
 import ru.spbau.kozlov.slr.parser.GrammarParser;
 import ru.spbau.kozlov.slr.parser.exceptions.AbstractParserException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Main {
 
+    private static final String LALR_OPTION = "-lalr";
+    private static final String TABLE_DRIVEN_OPTION = "-table-driven";
+    private static final String NO_TREES_OPTION = "-no-trees";
+    private static final String PARSE_OPTION = "-parse";
+    private static final String CACHE_OPTION = "-cache";
+    private static final String LISTENER_OPTION = "-listener";
+    private static final String BYPASS_UNITS_OPTION = "-bypass-units";
+    private static final String ARENA_TREES_OPTION = "-arena-trees";
+    private static final String EVENT_LOG_OPTION = "-event-log";
+
     public static void main(String[] args) {
-	    try {
-            GrammarParser grammarParser = new GrammarParser(Paths.get(args[0]));
-            EnrichedGrammar enrichedGrammar = grammarParser.getEnrichedGrammar();
-
-            SourceFilesGenerator sourceFilesGenerator = new SourceFilesGenerator(enrichedGrammar);
-            sourceFilesGenerator.generateSourceFiles();
-        } catch (IOException | AbstractParserException | AbstractConflictException e) {
-            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        Automaton.Type type = Automaton.Type.SLR;
+        SourceFilesGenerator.Backend backend = SourceFilesGenerator.Backend.STATES;
+        boolean buildParseTrees = true;
+        boolean generateParseListener = false;
+        boolean bypassUnitReductions = false;
+        boolean buildArenaParseTrees = false;
+        boolean recordParseEvents = false;
+        List<String> paths = new ArrayList<>();
+        String inputPath = null;
+        String cachePath = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals(LALR_OPTION)) {
+                type = Automaton.Type.LALR;
+            } else if (arg.equals(TABLE_DRIVEN_OPTION)) {
+                backend = SourceFilesGenerator.Backend.TABLE_DRIVEN;
+            } else if (arg.equals(NO_TREES_OPTION)) {
+                buildParseTrees = false;
+            } else if (arg.equals(LISTENER_OPTION)) {
+                generateParseListener = true;
+            } else if (arg.equals(BYPASS_UNITS_OPTION)) {
+                bypassUnitReductions = true;
+            } else if (arg.equals(ARENA_TREES_OPTION)) {
+                buildArenaParseTrees = true;
+            } else if (arg.equals(EVENT_LOG_OPTION)) {
+                recordParseEvents = true;
+            } else if (arg.equals(PARSE_OPTION) && i + 1 < args.length) {
+                inputPath = args[++i];
+            } else if (arg.equals(CACHE_OPTION) && i + 1 < args.length) {
+                cachePath = args[++i];
+            } else {
+                paths.add(arg);
+            }
+        }
+
+        if (paths.isEmpty()) {
+            System.err.println("Usage: Main [" + LALR_OPTION + "] [" + TABLE_DRIVEN_OPTION + "] [" + NO_TREES_OPTION + "] [" + LISTENER_OPTION + "] [" + BYPASS_UNITS_OPTION + "] [" + ARENA_TREES_OPTION + "] [" + EVENT_LOG_OPTION + "] [" + PARSE_OPTION + " <input file>] [" + CACHE_OPTION + " <directory>] <grammar file>...");
+            return;
+        }
+
+        Options options = new Options(type, backend, buildParseTrees, generateParseListener, bypassUnitReductions, buildArenaParseTrees, recordParseEvents, inputPath, cachePath);
+        if (paths.size() == 1) {
+            try {
+                process(paths.get(0), options);
+            } catch (Exception e) {
+                printError(null, e);
+            }
+            return;
+        }
+
+        // grammars are independent, so they are analyzed and generated concurrently
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(paths.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String path : paths) {
+                futures.add(executorService.submit(() -> {
+                    process(path, options);
+                    return null;
+                }));
+            }
+
+            for (int i = 0; i < paths.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    printError(paths.get(i), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void process(String path, Options options) throws IOException, AbstractParserException, AbstractConflictException, ParseException {
+        EnrichedGrammar enrichedGrammar;
+        if (options.cachePath != null) {
+            enrichedGrammar = new GrammarCache(Paths.get(options.cachePath)).getEnrichedGrammar(Paths.get(path), options.type);
+        } else {
+            GrammarParser grammarParser = new GrammarParser(Paths.get(path));
+            enrichedGrammar = grammarParser.getEnrichedGrammar();
+        }
+
+        if (options.inputPath != null) {
+            String input = new String(Files.readAllBytes(Paths.get(options.inputPath)), StandardCharsets.UTF_8);
+            System.out.println(new ParserEngine(enrichedGrammar, options.type).parse(input));
+            return;
+        }
+
+        SourceFilesGenerator sourceFilesGenerator = new SourceFilesGenerator(enrichedGrammar, options.type);
+        sourceFilesGenerator.setBackend(options.backend);
+        sourceFilesGenerator.setBuildParseTrees(options.buildParseTrees);
+        sourceFilesGenerator.setGenerateParseListener(options.generateParseListener);
+        sourceFilesGenerator.setBypassUnitReductions(options.bypassUnitReductions);
+        sourceFilesGenerator.setBuildArenaParseTrees(options.buildArenaParseTrees);
+        sourceFilesGenerator.setRecordParseEvents(options.recordParseEvents);
+        sourceFilesGenerator.generateSourceFiles();
+    }
+
+    /**
+     * @param path the grammar file or null if it is the only one
+     */
+    private static void printError(String path, Throwable e) {
+        String prefix = path != null ? path + ": " : "";
+        if (e instanceof ParseException) {
+            System.err.println(prefix + e.getClass().getName() + ": " + e.getMessage() + ", position: " + ((ParseException) e).getErrorOffset());
+        } else if (e instanceof IOException || e instanceof AbstractParserException || e instanceof AbstractConflictException) {
+            System.err.println(prefix + e.getClass().getName() + ": " + e.getMessage());
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Options {
+
+        private final Automaton.Type type;
+        private final SourceFilesGenerator.Backend backend;
+        private final boolean buildParseTrees;
+        private final boolean generateParseListener;
+        private final boolean bypassUnitReductions;
+        private final boolean buildArenaParseTrees;
+        private final boolean recordParseEvents;
+        private final String inputPath;
+        private final String cachePath;
+
+        public Options(Automaton.Type type, SourceFilesGenerator.Backend backend, boolean buildParseTrees, boolean generateParseListener, boolean bypassUnitReductions, boolean buildArenaParseTrees, boolean recordParseEvents, String inputPath, String cachePath) {
+            this.type = type;
+            this.backend = backend;
+            this.buildParseTrees = buildParseTrees;
+            this.generateParseListener = generateParseListener;
+            this.bypassUnitReductions = bypassUnitReductions;
+            this.buildArenaParseTrees = buildArenaParseTrees;
+            this.recordParseEvents = recordParseEvents;
+            this.inputPath = inputPath;
+            this.cachePath = cachePath;
         }
     }
 }
@@ -0,0 +1,63 @@
+package ru.spbau.kozlov.slr.engine;
+
+import java.util.List;
+
+/**
+ * Parse tree node of an {@link IncrementalParser}.
+ * The node records the state it was started in and how far past its end the input was examined while it was built,
+ * positions are kept as widths so that a node stays valid when the text before it is edited.
+ *
+ * @author adkozlov
+ */
+class IncrementalParseTree extends ParseTree {
+
+    private static final int NO_STATE = -1;
+
+    private final int state;
+    private final int width;
+    private final int lookaheadWidth;
+
+    /**
+     * @param width          the length of the token with the blanks preceding it
+     * @param lookaheadWidth the number of characters after the token examined by the lexer
+     */
+    public IncrementalParseTree(int symbol, String symbolName, String text, int width, int lookaheadWidth) {
+        super(symbol, symbolName, text);
+        state = NO_STATE;
+        this.width = width;
+        this.lookaheadWidth = lookaheadWidth;
+    }
+
+    /**
+     * @param state         the state the node was started in
+     * @param lookaheadSpan the width of the lookahead token with the characters examined by the lexer after it
+     */
+    public IncrementalParseTree(int symbol, String symbolName, List<IncrementalParseTree> children, int state, int lookaheadSpan) {
+        super(symbol, symbolName, children);
+        this.state = state;
+
+        int end = 0;
+        int examinedEnd = 0;
+        for (IncrementalParseTree child : children) {
+            end += child.width;
+            examinedEnd = Math.max(examinedEnd, end + child.lookaheadWidth);
+        }
+        width = end;
+        lookaheadWidth = Math.max(examinedEnd - end, lookaheadSpan);
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the number of characters after the node the node depends on
+     */
+    public int getLookaheadWidth() {
+        return lookaheadWidth;
+    }
+}
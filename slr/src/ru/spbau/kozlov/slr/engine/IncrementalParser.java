@@ -0,0 +1,270 @@
+package ru.spbau.kozlov.slr.engine;
+
+import ru.spbau.kozlov.slr.generator.LexerAutomaton;
+import ru.spbau.kozlov.slr.gramar.Automaton;
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.model.Item;
+
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the parse tree of a document between edits.
+ * After an edit only the tokens the edit may have changed are lexed again,
+ * the subtrees started in the current state whose input and lookahead are unchanged are shifted as a whole
+ * through their goto transitions and the other ones are broken down into their children.
+ *
+ * @author adkozlov
+ */
+public class IncrementalParser {
+
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    private final EnrichedGrammar grammar;
+    private final Automaton automaton;
+    private final LexerAutomaton lexerAutomaton;
+
+    private String text = "";
+    private IncrementalParseTree parseTree;
+
+    public IncrementalParser(ParserEngine engine) {
+        grammar = engine.getGrammar();
+        automaton = engine.getAutomaton();
+        lexerAutomaton = engine.getLexerAutomaton();
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return the parse tree of the text or null if the text could not be parsed
+     */
+    public ParseTree getParseTree() {
+        return parseTree;
+    }
+
+    public ParseTree parse(CharSequence input) throws ParseException {
+        return parse(input.toString(), null, 0, 0, input.length());
+    }
+
+    /**
+     * Replaces a part of the text and parses it again.
+     * The edit is applied even if the new text can not be parsed, the text is parsed from scratch after the next edit then.
+     *
+     * @param offset        the offset of the replaced part of the text
+     * @param removedLength the length of the replaced part of the text
+     * @param insertedText  the replacement
+     */
+    public ParseTree edit(int offset, int removedLength, CharSequence insertedText) throws ParseException {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > text.length()) {
+            throw new IndexOutOfBoundsException(String.format("Edit [%d, %d) is out of the text of length %d", offset, offset + removedLength, text.length()));
+        }
+
+        String newText = text.substring(0, offset) + insertedText + text.substring(offset + removedLength);
+        if (parseTree == null) {
+            return parse(newText, null, 0, 0, newText.length());
+        }
+        return parse(newText, parseTree, offset, removedLength, insertedText.length());
+    }
+
+    private ParseTree parse(String newText, IncrementalParseTree oldParseTree, int offset, int removedLength, int insertedLength) throws ParseException {
+        text = newText;
+        parseTree = null;
+
+        int startSymbolCode = grammar.getStartSymbolCode();
+        ArrayList<Automaton.State> states = automaton.getStates();
+        ArrayList<Item[]> reduces = automaton.getReduces();
+
+        Input input = new Input(oldParseTree, offset, removedLength, insertedLength);
+        int[] stack = new int[INITIAL_STACK_SIZE];
+        ArrayList<IncrementalParseTree> values = new ArrayList<>(INITIAL_STACK_SIZE);
+        int top = 0;
+
+        while (true) {
+            if (top + 1 == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+
+            int state = stack[top];
+            IncrementalParseTree lookahead = input.getCurrent();
+            if (lookahead != null && !lookahead.isTerminal()) {
+                if (lookahead.getState() == state) {
+                    stack[++top] = states.get(state).getNext(lookahead.getSymbol());
+                    values.add(lookahead);
+                    input.next();
+                } else {
+                    input.breakDown();
+                }
+                continue;
+            }
+
+            int symbol = lookahead != null ? lookahead.getSymbol() : grammar.getSymbolsCount(); // EOF
+            int next = lookahead != null ? states.get(state).getNext(symbol) : -1;
+            if (next != -1) {
+                stack[++top] = next;
+                values.add(lookahead);
+                input.next();
+                continue;
+            }
+
+            Item reduction = reduces.get(state)[symbol];
+            if (reduction == null) {
+                if (lookahead == null) {
+                    throw new ParseException("Unexpected EOF", text.length());
+                }
+                throw new ParseException("Unexpected token: " + lookahead.getText(), input.getStart() + lookahead.getWidth() - lookahead.getText().length());
+            }
+
+            if (reduction.getLeftSide() == startSymbolCode) {
+                parseTree = values.get(values.size() - 1);
+                return parseTree;
+            }
+
+            int length = reduction.getRightSide().size();
+            List<IncrementalParseTree> rightSide = values.subList(values.size() - length, values.size());
+            top -= length;
+            IncrementalParseTree value = new IncrementalParseTree(reduction.getLeftSide(), grammar.getSymbolName(reduction.getLeftSide()), rightSide, stack[top], input.getSpan());
+            rightSide.clear();
+
+            stack[top + 1] = states.get(stack[top]).getNext(reduction.getLeftSide());
+            top++;
+            values.add(value);
+        }
+    }
+
+    /**
+     * Sequence of the subtrees of the old parse tree before the edit, the tokens lexed again and the subtrees after the edit.
+     * The current element is null at the end of the input.
+     */
+    private class Input {
+
+        private static final int BEFORE_EDIT = 0;
+        private static final int EDITED = 1;
+        private static final int AFTER_EDIT = 2;
+
+        private final int offset;
+        private final int insertedLength;
+        private final int delta;
+
+        private final ArrayDeque<IncrementalParseTree> nodes = new ArrayDeque<>();
+        private int nodesStart = 0; // in the old text
+        private int phase = BEFORE_EDIT;
+        private TableLexer lexer;
+        private int position;
+
+        private IncrementalParseTree current;
+        private int start;
+
+        public Input(IncrementalParseTree oldParseTree, int offset, int removedLength, int insertedLength) throws ParseException {
+            this.offset = offset;
+            this.insertedLength = insertedLength;
+            delta = insertedLength - removedLength;
+            if (oldParseTree != null) {
+                nodes.push(oldParseTree);
+            }
+            advance();
+        }
+
+        public IncrementalParseTree getCurrent() {
+            return current;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the number of characters the current terminal and the lexer examined, starting from the current offset
+         */
+        public int getSpan() {
+            return current != null ? current.getWidth() + current.getLookaheadWidth() : text.length() + 1 - start;
+        }
+
+        public void next() throws ParseException {
+            if (phase == EDITED) {
+                position = start + current.getWidth();
+            } else {
+                nodesStart += nodes.pop().getWidth();
+            }
+            advance();
+        }
+
+        public void breakDown() throws ParseException {
+            pushChildren(nodes.pop());
+            advance();
+        }
+
+        private void advance() throws ParseException {
+            if (phase == BEFORE_EDIT) {
+                while (!nodes.isEmpty()) {
+                    IncrementalParseTree node = nodes.peek();
+                    if (nodesStart + node.getWidth() + node.getLookaheadWidth() <= offset) {
+                        current = node;
+                        start = nodesStart;
+                        return;
+                    }
+                    if (node.isTerminal()) {
+                        break;
+                    }
+                    pushChildren(nodes.pop());
+                }
+
+                phase = EDITED;
+                position = nodesStart;
+            }
+
+            if (phase == EDITED) {
+                if (position < offset + insertedLength || !seek(position - delta)) {
+                    if (lexer == null) {
+                        lexer = new TableLexer(lexerAutomaton, grammar.getSymbolsCount() - grammar.getNonTerminalsCount(), text, position);
+                    } else {
+                        lexer.nextToken();
+                    }
+
+                    start = position;
+                    if (lexer.isEmpty()) {
+                        current = null;
+                        return;
+                    }
+
+                    int symbol = grammar.getNonTerminalsCount() + lexer.getCurrentKind();
+                    int end = lexer.getCurrentEnd();
+                    current = new IncrementalParseTree(symbol, grammar.getSymbolName(symbol), text.substring(lexer.getCurrentStart(), end), end - position, lexer.getCurrentLookaheadEnd() - end);
+                    return;
+                }
+                phase = AFTER_EDIT;
+            }
+
+            current = nodes.peek();
+            start = nodesStart + delta;
+        }
+
+        /**
+         * Skips the old subtrees preceding the offset in the old text.
+         *
+         * @return true if a subtree starts at the offset
+         */
+        private boolean seek(int oldOffset) {
+            while (!nodes.isEmpty() && nodesStart < oldOffset) {
+                IncrementalParseTree node = nodes.pop();
+                if (nodesStart + node.getWidth() <= oldOffset || node.isTerminal()) {
+                    nodesStart += node.getWidth();
+                } else {
+                    pushChildren(node);
+                }
+            }
+            return !nodes.isEmpty() && nodesStart == oldOffset;
+        }
+
+        private void pushChildren(IncrementalParseTree node) {
+            List<ParseTree> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                nodes.push((IncrementalParseTree) children.get(i));
+            }
+        }
+    }
+}
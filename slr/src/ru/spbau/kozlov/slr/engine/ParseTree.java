@@ -0,0 +1,73 @@
+package ru.spbau.kozlov.slr.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parse tree built by a {@link ParserEngine}, leaves hold the text of the tokens.
+ *
+ * @author adkozlov
+ */
+public class ParseTree {
+
+    private final int symbol;
+    private final String symbolName;
+    private final String text;
+    private final List<ParseTree> children;
+
+    public ParseTree(int symbol, String symbolName, String text) {
+        this.symbol = symbol;
+        this.symbolName = symbolName;
+        this.text = text;
+        children = Collections.emptyList();
+    }
+
+    public ParseTree(int symbol, String symbolName, List<? extends ParseTree> children) {
+        this.symbol = symbol;
+        this.symbolName = symbolName;
+        text = null;
+        this.children = new ArrayList<>(children);
+    }
+
+    public int getSymbol() {
+        return symbol;
+    }
+
+    public String getSymbolName() {
+        return symbolName;
+    }
+
+    public boolean isTerminal() {
+        return text != null;
+    }
+
+    /**
+     * @return the text of the token or null for a non-terminal
+     */
+    public String getText() {
+        return text;
+    }
+
+    public List<ParseTree> getChildren() {
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        if (isTerminal()) {
+            return text;
+        }
+
+        StringBuilder stringBuilder = new StringBuilder(symbolName);
+        stringBuilder.append('(');
+        for (int i = 0; i < children.size(); i++) {
+            if (i != 0) {
+                stringBuilder.append(' ');
+            }
+            stringBuilder.append(children.get(i));
+        }
+        stringBuilder.append(')');
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package ru.spbau.kozlov.slr.engine;
+
+import ru.spbau.kozlov.slr.generator.LexerAutomaton;
+import ru.spbau.kozlov.slr.gramar.Automaton;
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.exceptions.ReduceReduceConflictException;
+import ru.spbau.kozlov.slr.gramar.exceptions.ShiftReduceConflictException;
+import ru.spbau.kozlov.slr.gramar.model.Item;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses input in process by interpreting the automaton of a grammar, without generating and compiling sources.
+ *
+ * @author adkozlov
+ */
+public class ParserEngine {
+
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    private final EnrichedGrammar grammar;
+    private final Automaton automaton;
+    private final LexerAutomaton lexerAutomaton;
+
+    public ParserEngine(EnrichedGrammar grammar) throws ShiftReduceConflictException, ReduceReduceConflictException {
+        this(grammar, Automaton.Type.SLR);
+    }
+
+    public ParserEngine(EnrichedGrammar grammar, Automaton.Type type) throws ShiftReduceConflictException, ReduceReduceConflictException {
+        this.grammar = grammar;
+        automaton = grammar.getAutomaton(type);
+        lexerAutomaton = new LexerAutomaton(grammar);
+    }
+
+    public EnrichedGrammar getGrammar() {
+        return grammar;
+    }
+
+    Automaton getAutomaton() {
+        return automaton;
+    }
+
+    LexerAutomaton getLexerAutomaton() {
+        return lexerAutomaton;
+    }
+
+    public ParseTree parse(CharSequence input) throws ParseException {
+        return parse(input, new ParseTreeBuilder());
+    }
+
+    public <T> T parse(CharSequence input, ReductionCallback<T> callback) throws ParseException {
+        int nonTerminalsCount = grammar.getNonTerminalsCount();
+        int symbolsCount = grammar.getSymbolsCount();
+        int startSymbolCode = grammar.getStartSymbolCode();
+        ArrayList<Automaton.State> states = automaton.getStates();
+        ArrayList<Item[]> reduces = automaton.getReduces();
+
+        TableLexer lexer = new TableLexer(lexerAutomaton, symbolsCount - nonTerminalsCount, input);
+        int[] stack = new int[INITIAL_STACK_SIZE];
+        ArrayList<T> values = new ArrayList<>(INITIAL_STACK_SIZE);
+        int top = 0;
+
+        while (true) {
+            if (top + 1 == stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+
+            int symbol = nonTerminalsCount + lexer.getCurrentKind(); // EOF is symbolsCount
+            int state = stack[top];
+            int next = !lexer.isEmpty() ? states.get(state).getNext(symbol) : -1;
+            if (next != -1) {
+                stack[++top] = next;
+                values.add(callback.shift(symbol, input, lexer.getCurrentStart(), lexer.getCurrentEnd()));
+                lexer.nextToken();
+                continue;
+            }
+
+            Item reduction = reduces.get(state)[symbol];
+            if (reduction == null) {
+                if (lexer.isEmpty()) {
+                    throw new ParseException("Unexpected EOF", lexer.getCurrentStart());
+                }
+                throw new ParseException("Unexpected token: " + input.subSequence(lexer.getCurrentStart(), lexer.getCurrentEnd()), lexer.getCurrentStart());
+            }
+
+            if (reduction.getLeftSide() == startSymbolCode) {
+                return values.get(values.size() - 1);
+            }
+
+            int length = reduction.getRightSide().size();
+            List<T> rightSide = values.subList(values.size() - length, values.size());
+            T value = callback.reduce(reduction.getLeftSide(), reduction.getProductionId(), rightSide);
+            rightSide.clear();
+
+            top -= length;
+            int target = states.get(stack[top]).getNext(reduction.getLeftSide());
+            stack[++top] = target;
+            values.add(value);
+        }
+    }
+
+    private class ParseTreeBuilder implements ReductionCallback<ParseTree> {
+
+        @Override
+        public ParseTree shift(int symbol, CharSequence input, int start, int end) {
+            return new ParseTree(symbol, grammar.getSymbolName(symbol), input.subSequence(start, end).toString());
+        }
+
+        @Override
+        public ParseTree reduce(int leftSide, int productionId, List<ParseTree> rightSide) {
+            return new ParseTree(leftSide, grammar.getSymbolName(leftSide), rightSide);
+        }
+    }
+}
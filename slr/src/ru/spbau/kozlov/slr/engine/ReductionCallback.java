@@ -0,0 +1,23 @@
+package ru.spbau.kozlov.slr.engine;
+
+import java.util.List;
+
+/**
+ * Computes the values of the symbols recognized by a {@link ParserEngine}.
+ *
+ * @author adkozlov
+ */
+public interface ReductionCallback<T> {
+
+    /**
+     * @param symbol the code of the shifted terminal
+     * @param start  the offset of the token in the input
+     * @param end    the offset following the token
+     */
+    T shift(int symbol, CharSequence input, int start, int end);
+
+    /**
+     * @param rightSide the values of the right side symbols, valid only during the call
+     */
+    T reduce(int leftSide, int productionId, List<T> rightSide);
+}
@@ -0,0 +1,112 @@
+package ru.spbau.kozlov.slr.engine;
+
+import ru.spbau.kozlov.slr.generator.LexerAutomaton;
+
+import java.text.ParseException;
+
+/**
+ * Maximal munch lexer interpreting the tables of a {@link LexerAutomaton} over an in-memory input.
+ *
+ * @author adkozlov
+ */
+class TableLexer {
+
+    private final int[] characterClasses;
+    private final int classesCount;
+    private final int[] transitions;
+    private final int[] accepts;
+    private final int eofKind;
+    private final CharSequence input;
+
+    private int position;
+    private int currentKind;
+    private int currentStart;
+    private int currentEnd;
+    private int currentLookaheadEnd;
+
+    public TableLexer(LexerAutomaton lexerAutomaton, int eofKind, CharSequence input) throws ParseException {
+        this(lexerAutomaton, eofKind, input, 0);
+    }
+
+    public TableLexer(LexerAutomaton lexerAutomaton, int eofKind, CharSequence input, int position) throws ParseException {
+        characterClasses = lexerAutomaton.getCharacterClasses();
+        classesCount = lexerAutomaton.getClassesCount();
+        transitions = lexerAutomaton.getTransitions();
+        accepts = lexerAutomaton.getAccepts();
+        this.eofKind = eofKind;
+        this.input = input;
+        this.position = position;
+        nextToken();
+    }
+
+    public boolean isEmpty() {
+        return currentKind == eofKind;
+    }
+
+    public int getCurrentKind() {
+        return currentKind;
+    }
+
+    public int getCurrentStart() {
+        return currentStart;
+    }
+
+    public int getCurrentEnd() {
+        return currentEnd;
+    }
+
+    /**
+     * @return the offset following the last character examined to recognize the current token,
+     * the length of the input plus one if the end of the input was reached
+     */
+    public int getCurrentLookaheadEnd() {
+        return currentLookaheadEnd;
+    }
+
+    public void nextToken() throws ParseException {
+        int length = input.length();
+        while (position < length && isBlank(input.charAt(position))) {
+            position++;
+        }
+        currentStart = position;
+
+        if (position == length) {
+            currentEnd = position;
+            currentLookaheadEnd = length + 1;
+            currentKind = eofKind;
+            return;
+        }
+
+        int state = 0;
+        int kind = LexerAutomaton.NOT_ACCEPTING;
+        int end = position;
+        int lookaheadEnd = length + 1;
+        for (int i = position; i < length; i++) {
+            state = transitions[state * classesCount + getCharacterClass(input.charAt(i))];
+            if (state == LexerAutomaton.NO_TRANSITION) {
+                lookaheadEnd = i + 1;
+                break;
+            }
+            if (accepts[state] != LexerAutomaton.NOT_ACCEPTING) {
+                kind = accepts[state];
+                end = i + 1;
+            }
+        }
+        if (kind == LexerAutomaton.NOT_ACCEPTING) {
+            throw new ParseException(String.format("Illegal character '%c' at position %d", input.charAt(position), position), position);
+        }
+
+        position = end;
+        currentEnd = end;
+        currentLookaheadEnd = lookaheadEnd;
+        currentKind = kind;
+    }
+
+    private int getCharacterClass(char character) {
+        return character < characterClasses.length ? characterClasses[character] : 0;
+    }
+
+    private static boolean isBlank(char character) {
+        return character == ' ' || character == '\n' || character == '\t' || character == '\r';
+    }
+}
@@ -0,0 +1,117 @@
+package ru.spbau.kozlov.slr.generator;
+
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Deterministic automaton recognizing the spellings of all terminals.
+ * Characters with identical transitions are merged into classes, class 0 stands for all the characters
+ * that do not occur in any spelling. The state 0 is initial, a missing transition is -1.
+ *
+ * @author adkozlov
+ */
+public class LexerAutomaton {
+
+    public static final int NO_TRANSITION = -1;
+    public static final int NOT_ACCEPTING = -1;
+
+    private final int[] characterClasses;
+    private final int classesCount;
+    private final int[] transitions;
+    private final int[] accepts;
+
+    public LexerAutomaton(EnrichedGrammar grammar) {
+        ArrayList<Map<Character, Integer>> trie = new ArrayList<>();
+        ArrayList<Integer> trieAccepts = new ArrayList<>();
+        trie.add(new HashMap<>());
+        trieAccepts.add(NOT_ACCEPTING);
+
+        TreeSet<Character> characters = new TreeSet<>();
+        for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
+            String spelling = grammar.getToken(grammar.getSymbolName(i));
+
+            int state = 0;
+            for (char character : spelling.toCharArray()) {
+                characters.add(character);
+
+                Integer next = trie.get(state).get(character);
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(character, next);
+                    trie.add(new HashMap<>());
+                    trieAccepts.add(NOT_ACCEPTING);
+                }
+                state = next;
+            }
+            trieAccepts.set(state, i - grammar.getNonTerminalsCount());
+        }
+
+        int statesCount = trie.size();
+        characterClasses = new int[characters.isEmpty() ? 0 : characters.last() + 1];
+        Map<List<Integer>, Integer> classesNumbering = new HashMap<>();
+        ArrayList<Character> representatives = new ArrayList<>();
+        for (char character : characters) {
+            List<Integer> column = new ArrayList<>(statesCount);
+            for (Map<Character, Integer> children : trie) {
+                column.add(children.getOrDefault(character, NO_TRANSITION));
+            }
+
+            Integer characterClass = classesNumbering.get(column);
+            if (characterClass == null) {
+                characterClass = representatives.size() + 1;
+                classesNumbering.put(column, characterClass);
+                representatives.add(character);
+            }
+            characterClasses[character] = characterClass;
+        }
+
+        classesCount = representatives.size() + 1;
+        transitions = new int[statesCount * classesCount];
+        Arrays.fill(transitions, NO_TRANSITION);
+        for (int i = 0; i < statesCount; i++) {
+            for (int j = 1; j < classesCount; j++) {
+                transitions[i * classesCount + j] = trie.get(i).getOrDefault(representatives.get(j - 1), NO_TRANSITION);
+            }
+        }
+
+        accepts = trieAccepts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return classes of the characters from 0 to the greatest character occurring in spellings
+     */
+    public int[] getCharacterClasses() {
+        return characterClasses;
+    }
+
+    /**
+     * @return true if all the spellings consist of ASCII characters, so the input can be lexed as UTF-8 bytes
+     */
+    public boolean isASCII() {
+        return characterClasses.length <= 0x80;
+    }
+
+    public int getClassesCount() {
+        return classesCount;
+    }
+
+    /**
+     * @return the transition by the class c from the state s is stored at s * classesCount + c
+     */
+    public int[] getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return the kind of the token recognized in a state or -1
+     */
+    public int[] getAccepts() {
+        return accepts;
+    }
+}
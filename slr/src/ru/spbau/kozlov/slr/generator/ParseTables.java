@@ -0,0 +1,327 @@
+package ru.spbau.kozlov.slr.generator;
+
+import ru.spbau.kozlov.slr.gramar.Automaton;
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.model.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Action and goto tables of an automaton compressed with row merging and row displacement.
+ * Action entries: 0 is an error, s + 1 is a shift to the state s, -(p + 1) is a reduction by the production p.
+ * Goto entries: the next state or -1.
+ * The shifts and gotos into the states only reducing by a bypassed unit production A -> X may be redirected to
+ * the gotos by A from the same states, i.e. to the states the parser would get to after the reduction.
+ * Columns of the action table are terminal kinds (symbol code minus non-terminals count), EOF is the last one.
+ *
+ * @author adkozlov
+ */
+class ParseTables {
+
+    public static final int ERROR = 0;
+    public static final int NO_GOTO = -1;
+
+    public static class CompressedTable {
+
+        private final int rowsCount;
+        private final int columnsCount;
+        private final int defaultValue;
+        private final int[] rowIndices;
+        private final int[] base;
+        private final int[] check;
+        private final int[] value;
+
+        /**
+         * Identical rows are merged first, then every distinct row gets a displacement in the shared
+         * check/value arrays such that its non-default entries do not collide with the rows placed before.
+         */
+        private CompressedTable(int[][] rows, int defaultValue) {
+            rowsCount = rows.length;
+            columnsCount = rowsCount > 0 ? rows[0].length : 0;
+            this.defaultValue = defaultValue;
+
+            rowIndices = new int[rowsCount];
+            ArrayList<int[]> distinctRows = new ArrayList<>();
+            Map<List<Integer>, Integer> rowsNumbering = new HashMap<>();
+            for (int i = 0; i < rowsCount; i++) {
+                List<Integer> key = Arrays.stream(rows[i]).boxed().collect(Collectors.toList());
+                Integer index = rowsNumbering.get(key);
+                if (index == null) {
+                    index = distinctRows.size();
+                    rowsNumbering.put(key, index);
+                    distinctRows.add(rows[i]);
+                }
+                rowIndices[i] = index;
+            }
+
+            int distinctRowsCount = distinctRows.size();
+            base = new int[distinctRowsCount];
+
+            int[][] columns = new int[distinctRowsCount][];
+            for (int i = 0; i < distinctRowsCount; i++) {
+                int[] row = distinctRows.get(i);
+                columns[i] = IntStream.range(0, columnsCount).filter(j -> row[j] != defaultValue).toArray();
+            }
+
+            Integer[] order = new Integer[distinctRowsCount];
+            for (int i = 0; i < distinctRowsCount; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingInt((Integer i) -> -columns[i].length).thenComparingInt(i -> i));
+
+            BitSet occupied = new BitSet();
+            int length = 0;
+            for (int i : order) {
+                int offset = 0;
+                while (!fits(occupied, columns[i], offset)) {
+                    offset++;
+                }
+
+                base[i] = offset;
+                for (int j : columns[i]) {
+                    occupied.set(offset + j);
+                }
+                length = Math.max(length, offset + columnsCount);
+            }
+
+            check = new int[length];
+            value = new int[length];
+            Arrays.fill(check, -1);
+            Arrays.fill(value, defaultValue);
+            for (int i = 0; i < distinctRowsCount; i++) {
+                for (int j : columns[i]) {
+                    check[base[i] + j] = i;
+                    value[base[i] + j] = distinctRows.get(i)[j];
+                }
+            }
+        }
+
+        private static boolean fits(BitSet occupied, int[] columns, int offset) {
+            for (int j : columns) {
+                if (occupied.get(offset + j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public int get(int state, int column) {
+            int row = rowIndices[state];
+            int index = base[row] + column;
+            return check[index] == row ? value[index] : defaultValue;
+        }
+
+        public int getDefaultValue() {
+            return defaultValue;
+        }
+
+        public int[] getRowIndices() {
+            return rowIndices;
+        }
+
+        public int[] getBase() {
+            return base;
+        }
+
+        public int[] getCheck() {
+            return check;
+        }
+
+        public int[] getValue() {
+            return value;
+        }
+
+        public int getUncompressedSize() {
+            return rowsCount * columnsCount * Integer.BYTES;
+        }
+
+        public int getCompressedSize() {
+            return rowIndices.length * getElementSize(rowIndices) + base.length * getElementSize(base) + check.length * getElementSize(check) + value.length * getElementSize(value);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d x %d = %d entries (%d bytes) -> %d distinct rows, %d slots (%d bytes)",
+                    rowsCount, columnsCount, rowsCount * columnsCount, getUncompressedSize(),
+                    base.length, value.length, getCompressedSize());
+        }
+    }
+
+    private final CompressedTable actions;
+    private final CompressedTable gotos;
+    private int redirectedShiftsCount = 0;
+    private int redirectedGotosCount = 0;
+    private int maxSkippedPerShiftCount = 0;
+    private int maxSkippedPerGotoCount = 0;
+
+    public ParseTables(EnrichedGrammar grammar, Automaton automaton) {
+        this(grammar, automaton, null);
+    }
+
+    /**
+     * @param unitReductions the unit productions whose reductions are bypassed or null
+     */
+    public ParseTables(EnrichedGrammar grammar, Automaton automaton, UnitReductions unitReductions) {
+        int nonTerminalsCount = grammar.getNonTerminalsCount();
+        int terminalsCount = grammar.getSymbolsCount() - nonTerminalsCount;
+
+        ArrayList<Automaton.State> states = automaton.getStates();
+        ArrayList<Item[]> reduces = automaton.getReduces();
+        int[][] actionRows = new int[states.size()][terminalsCount + 1]; // EOF
+        int[][] gotoRows = new int[states.size()][nonTerminalsCount];
+        for (int i = 0; i < states.size(); i++) {
+            Automaton.State state = states.get(i);
+            Item[] items = reduces.get(i);
+
+            for (int j = 0; j <= terminalsCount; j++) {
+                int symbol = j + nonTerminalsCount;
+                if (j != terminalsCount && state.getNext(symbol) != -1) {
+                    actionRows[i][j] = state.getNext(symbol) + 1;
+                } else if (items[symbol] != null) {
+                    actionRows[i][j] = -(items[symbol].getProductionId() + 1);
+                } else {
+                    actionRows[i][j] = ERROR;
+                }
+            }
+            for (int j = 0; j < nonTerminalsCount; j++) {
+                gotoRows[i][j] = state.getNext(j);
+            }
+        }
+
+        if (unitReductions != null) {
+            redirectTransitions(grammar, automaton, unitReductions, actionRows, gotoRows);
+        }
+
+        actions = new CompressedTable(actionRows, ERROR);
+        gotos = new CompressedTable(gotoRows, NO_GOTO);
+    }
+
+    /**
+     * A skipped state is never on the stack, so a syntax error it would report is reported by the state it is skipped to
+     * before the next shift, with the same lookahead.
+     */
+    private void redirectTransitions(EnrichedGrammar grammar, Automaton automaton, UnitReductions unitReductions, int[][] actionRows, int[][] gotoRows) {
+        int nonTerminalsCount = grammar.getNonTerminalsCount();
+        ArrayList<Automaton.State> states = automaton.getStates();
+        int[] skippedLeftSides = getSkippedLeftSides(automaton, unitReductions);
+
+        for (int i = 0; i < states.size(); i++) {
+            Automaton.State state = states.get(i);
+            for (int j = 0; j < state.getTransitionsCount(); j++) {
+                int target = state.getTransitionTarget(j);
+                if (skippedLeftSides[target] == NO_GOTO) {
+                    continue;
+                }
+
+                // chains of unit productions are finite in a grammar without conflicts
+                int skippedReductionsCount = 0;
+                while (skippedLeftSides[target] != NO_GOTO) {
+                    target = state.getNext(skippedLeftSides[target]);
+                    skippedReductionsCount++;
+                }
+
+                int symbol = state.getTransitionSymbol(j);
+                if (symbol < nonTerminalsCount) {
+                    gotoRows[i][symbol] = target;
+                    redirectedGotosCount++;
+                    maxSkippedPerGotoCount = Math.max(maxSkippedPerGotoCount, skippedReductionsCount);
+                } else {
+                    actionRows[i][symbol - nonTerminalsCount] = target + 1;
+                    redirectedShiftsCount++;
+                    maxSkippedPerShiftCount = Math.max(maxSkippedPerShiftCount, skippedReductionsCount);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the left side of the production for every state without shifts only reducing by a bypassed production, otherwise -1
+     */
+    private static int[] getSkippedLeftSides(Automaton automaton, UnitReductions unitReductions) {
+        ArrayList<Automaton.State> states = automaton.getStates();
+        ArrayList<Item[]> reduces = automaton.getReduces();
+        int[] result = new int[states.size()];
+        Arrays.fill(result, NO_GOTO);
+
+        for (int i = 0; i < states.size(); i++) {
+            if (states.get(i).getTransitionsCount() != 0) {
+                continue;
+            }
+
+            int productionId = -1;
+            boolean isSingle = true;
+            for (Item item : reduces.get(i)) {
+                if (item != null) {
+                    isSingle &= productionId == -1 || productionId == item.getProductionId();
+                    productionId = item.getProductionId();
+                }
+            }
+            if (isSingle && productionId != -1 && unitReductions.isBypassed(productionId)) {
+                result[i] = unitReductions.getLeftSide(productionId);
+            }
+        }
+
+        return result;
+    }
+
+    public CompressedTable getActions() {
+        return actions;
+    }
+
+    public CompressedTable getGotos() {
+        return gotos;
+    }
+
+    public int getRedirectedShiftsCount() {
+        return redirectedShiftsCount;
+    }
+
+    public int getRedirectedGotosCount() {
+        return redirectedGotosCount;
+    }
+
+    /**
+     * @return the maximum number of reductions skipped after shifting a token
+     */
+    public int getMaxSkippedPerShiftCount() {
+        return maxSkippedPerShiftCount;
+    }
+
+    /**
+     * @return the maximum number of reductions skipped after another reduction
+     */
+    public int getMaxSkippedPerGotoCount() {
+        return maxSkippedPerGotoCount;
+    }
+
+    public static String getElementType(int[] array) {
+        switch (getElementSize(array)) {
+            case Byte.BYTES:
+                return "byte";
+            case Short.BYTES:
+                return "short";
+            default:
+                return "int";
+        }
+    }
+
+    public static int getElementSize(int[] array) {
+        int min = Arrays.stream(array).min().orElse(0);
+        int max = Arrays.stream(array).max().orElse(0);
+        if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE) {
+            return Byte.BYTES;
+        }
+        if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) {
+            return Short.BYTES;
+        }
+        return Integer.BYTES;
+    }
+}
@@ -8,13 +8,27 @@ import ru.spbau.kozlov.slr.gramar.model.Attribute;
 import ru.spbau.kozlov.slr.gramar.model.Item;
 import ru.spbau.kozlov.slr.gramar.model.Production;
 
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * @author adkozlov
@@ -24,13 +38,16 @@ public class SourceFilesGenerator {
     private static class IndentWriter implements Closeable {
 
         private static final String JAVA_EXTENSION = ".java";
+        private static final String LINE_SEPARATOR = System.lineSeparator();
+        private static final int INITIAL_BUFFER_SIZE = 8192;
 
-        private final BufferedWriter bufferedWriter;
+        private final Path path;
+        private final StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
         private int indent = 0;
         private String tab = "\t";
 
-        public IndentWriter(String directoryName, String fileName) throws IOException {
-            bufferedWriter = Files.newBufferedWriter(Paths.get(directoryName + File.separatorChar + fileName + JAVA_EXTENSION));
+        public IndentWriter(String directoryName, String fileName) {
+            path = Paths.get(directoryName + File.separatorChar + fileName + JAVA_EXTENSION);
         }
 
         public String getTab() {
@@ -42,7 +59,7 @@ public class SourceFilesGenerator {
         }
 
         public void printlnLeftBrace() throws IOException {
-            bufferedWriter.write(" {");
+            buffer.append(" {");
             println();
             indent++;
         }
@@ -56,7 +73,7 @@ public class SourceFilesGenerator {
         }
 
         public void printWithoutIndent(String string) throws IOException {
-            bufferedWriter.write(string);
+            buffer.append(string);
         }
 
         public void print(String string) throws IOException {
@@ -65,7 +82,7 @@ public class SourceFilesGenerator {
         }
 
         public void println() throws IOException {
-            bufferedWriter.newLine();
+            buffer.append(LINE_SEPARATOR);
         }
 
         public void println(String string) throws IOException {
@@ -79,37 +96,212 @@ public class SourceFilesGenerator {
 
         public void printf(String format, Object... args) throws IOException {
             printIndent();
-            printfWithoutIndent(String.format(format, args));
+            printWithoutIndent(String.format(format, args));
         }
 
+        /**
+         * Writes the whole rendered file at once.
+         */
         @Override
         public void close() throws IOException {
-            bufferedWriter.close();
+            Files.write(path, buffer.toString().getBytes(StandardCharsets.UTF_8));
         }
 
         private void printIndent() throws IOException {
             for (int i = 0; i < indent; i++) {
-                bufferedWriter.write(tab);
+                buffer.append(tab);
             }
         }
     }
 
+    private static final int PACKED_CHUNK_LENGTH = 16384;
+    private static final int INPUT_BLOCK_SIZE = 8192;
+
+    private interface Phase {
+
+        void generate() throws IOException;
+    }
+
+    public enum Backend {
+        /**
+         * A class per state, the parser dispatches to the state on top of the stack.
+         */
+        STATES,
+        /**
+         * A single parser loop over the action and goto tables with primitive state stack.
+         */
+        TABLE_DRIVEN
+    }
+
+    private static final int INITIAL_STACK_SIZE = 64;
+    private static final int INITIAL_ARENA_SIZE = 1024;
+    private static final Pattern ATTRIBUTE_REFERENCE = Pattern.compile("\\$(\\d+)\\.(\\w+)");
+
     private final EnrichedGrammar grammar;
     private final Automaton automaton;
     private final String directoryName;
 
+    private Backend backend = Backend.STATES;
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+    private boolean buildParseTrees = true;
+    private boolean generateParseListener = false;
+    private boolean bypassUnitReductions = false;
+    private boolean buildArenaParseTrees = false;
+    private boolean recordParseEvents = false;
+
     public SourceFilesGenerator(EnrichedGrammar grammar) throws ShiftReduceConflictException, ReduceReduceConflictException {
+        this(grammar, Automaton.Type.SLR);
+    }
+
+    public SourceFilesGenerator(EnrichedGrammar grammar, Automaton.Type type) throws ShiftReduceConflictException, ReduceReduceConflictException {
         this.grammar = grammar;
-        automaton = grammar.getAutomaton();
+        automaton = grammar.getAutomaton(type);
         directoryName = grammar.getGrammarPackage().replace(".", File.separator);
     }
 
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public boolean getBuildParseTrees() {
+        return buildParseTrees;
+    }
+
+    /**
+     * Without parse trees the generated parser keeps only the attributes of the symbols on its stack
+     * and returns the start symbol tree without children. Such a parser is always table-driven.
+     */
+    public void setBuildParseTrees(boolean buildParseTrees) {
+        this.buildParseTrees = buildParseTrees;
+    }
+
+    public boolean getGenerateParseListener() {
+        return generateParseListener;
+    }
+
+    /**
+     * The parser with a listener reports its shifts, reductions and errors to the listener of the parser context if it is set.
+     * Without a listener the parser is generated exactly as before.
+     */
+    public void setGenerateParseListener(boolean generateParseListener) {
+        this.generateParseListener = generateParseListener;
+    }
+
+    public boolean getBypassUnitReductions() {
+        return bypassUnitReductions;
+    }
+
+    /**
+     * The parse tables of the parser without parse trees skip the states only reducing by unit productions copying attributes.
+     * With parse trees the nodes of unit productions are a part of the result, so nothing is skipped.
+     * A parse listener is not notified of the skipped reductions.
+     */
+    public void setBypassUnitReductions(boolean bypassUnitReductions) {
+        this.bypassUnitReductions = bypassUnitReductions;
+    }
+
+    public boolean getBuildArenaParseTrees() {
+        return buildArenaParseTrees;
+    }
+
+    /**
+     * The parser with arena parse trees keeps the nodes of all its trees in the primitive arrays of the arena of the parser context
+     * and returns a cursor over the start symbol node instead of a tree of objects. Such a parser is always table-driven.
+     * The arena is reused by the following parses until it is cleared, so the cursors stay valid until then.
+     */
+    public void setBuildArenaParseTrees(boolean buildArenaParseTrees) {
+        this.buildArenaParseTrees = buildArenaParseTrees;
+    }
+
+    public boolean getRecordParseEvents() {
+        return recordParseEvents;
+    }
+
+    /**
+     * The parser recording parse events appends its shifts and reductions to the postfix event log of the parser context
+     * instead of building the tree and returns this log. The trees of any of its subtrees are built on demand
+     * by replaying the reductions, so the attributes are evaluated only then. Such a parser is always table-driven.
+     * The log keeps the kinds and the spans of the shifted tokens in primitive arrays and holds only the token objects
+     * of the terminals with attributes, the other tokens are recreated when they are replayed.
+     * Arena parse trees take precedence over the event log.
+     */
+    public void setRecordParseEvents(boolean recordParseEvents) {
+        this.recordParseEvents = recordParseEvents;
+    }
+
+    public Map<String, Long> getPhaseTimes() {
+        return phaseTimes;
+    }
+
+    /**
+     * The phases are independent, so they are run concurrently, each writing its own files.
+     * Their times are reported after all of them have finished.
+     */
     public void generateSourceFiles() throws IOException {
-        generateTokenSourceFiles();
-        generateLexicalAnalyzerSourceFiles();
-        generateParseTreesSourceFiles();
-        generateStatesSourceFiles();
-        generateParserSourceFile();
+        Map<String, Phase> phases = new LinkedHashMap<>();
+        phases.put("tokens", this::generateTokenSourceFiles);
+        phases.put("lexical analyzer", this::generateLexicalAnalyzerSourceFiles);
+        phases.put("parse trees", isArena() ? this::generateParseTreeArenaSourceFiles : this::generateParseTreesSourceFiles);
+        phases.put("parse tables", this::generateParseTablesSourceFile);
+        if (isTableDriven()) {
+            phases.put("parser", this::generateTableDrivenParserSourceFile);
+        } else {
+            phases.put("states", this::generateStatesSourceFiles);
+            phases.put("parser", this::generateParserSourceFile);
+        }
+        phases.put("parser context", this::generateParserContextSourceFiles);
+        if (isEventLog()) {
+            phases.put("parse event log", this::generateParseEventLogSourceFile);
+        }
+        if (generateParseListener) {
+            phases.put("parse listener", this::generateParseListenerSourceFiles);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(phases.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            Map<String, Future<Long>> futures = new LinkedHashMap<>();
+            for (Map.Entry<String, Phase> entry : phases.entrySet()) {
+                Phase phase = entry.getValue();
+                futures.put(entry.getKey(), executorService.submit(() -> {
+                    long startTime = System.nanoTime();
+                    phase.generate();
+                    return System.nanoTime() - startTime;
+                }));
+            }
+
+            phaseTimes.clear();
+            for (Map.Entry<String, Future<Long>> entry : futures.entrySet()) {
+                phaseTimes.put(entry.getKey(), getPhaseTime(entry.getValue()));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        for (Map.Entry<String, Long> entry : phaseTimes.entrySet()) {
+            System.out.printf("%s %s: %.3f ms%n", grammar.getGrammarName(), entry.getKey(), entry.getValue() / 1e6);
+        }
+    }
+
+    private static long getPhaseTime(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
     }
 
     private IndentWriter getIndentWriter(String subPackage, String fileName, String suffix) throws IOException {
@@ -153,25 +345,40 @@ public class SourceFilesGenerator {
         }
 
         int leftSide = reduction.getLeftSide();
-        indentWriter.printf("Abstract%sParseTree parseTree = new %sParseTree(", grammarName, grammar.getSymbolName(leftSide));
+        indentWriter.printf("Abstract%sParseTree parseTree = ", grammarName);
+        printParseTreeCreation(indentWriter, reduction);
+
+        indentWriter.printf("stack.add(new %sPair(%sParser.getState(%sParser.getState(stack).next(%d), lexicalAnalyzer), parseTree));", grammarName, grammarName, grammarName, leftSide);
+        indentWriter.println();
+        if (generateParseListener) {
+            printListenerCall(indentWriter, String.format("onReduce(%d, stack.getLast().getState().getNumber(), stack.size())", reduction.getProductionId()));
+        }
+    }
+
+    private static void printListenerCall(IndentWriter indentWriter, String call) throws IOException {
+        indentWriter.print("if (listener != null)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.printf("listener.%s;", call);
+        indentWriter.println();
+        indentWriter.printlnRightBrace();
+    }
+
+    private void printParseTreeCreation(IndentWriter indentWriter, Item reduction) throws IOException {
+        String grammarName = grammar.getGrammarName();
+        ArrayList<Integer> rightSide = reduction.getRightSide();
+
+        ArrayList<String> arguments = new ArrayList<>();
         for (String action : reduction.getProductionActions()) {
-            indentWriter.printfWithoutIndent("%s, ", action.replace("$", "arg"));
+            arguments.add(action.replace("$", "arg"));
         }
         for (int i = 0; i < rightSide.size(); i++) {
             if (grammar.isTerminal(rightSide.get(i))) {
-                indentWriter.printfWithoutIndent("new Terminal%sParseTree(arg%d)", grammarName, i);
+                arguments.add(String.format("new Terminal%sParseTree(arg%d)", grammarName, i));
             } else {
-                indentWriter.printfWithoutIndent("arg%d", i);
-            }
-
-            if (i != rightSide.size() - 1) {
-                indentWriter.printWithoutIndent(", ");
+                arguments.add("arg" + i);
             }
         }
-        indentWriter.printWithoutIndent(");");
-        indentWriter.println();
-
-        indentWriter.printf("stack.add(new %sPair(%sParser.getState(%sParser.getState(stack).next(%d), lexicalAnalyzer), parseTree));", grammarName, grammarName, grammarName, leftSide);
+        indentWriter.printfWithoutIndent("new %sParseTree(%s);", grammar.getSymbolName(reduction.getLeftSide()), String.join(", ", arguments));
         indentWriter.println();
     }
 
@@ -179,6 +386,20 @@ public class SourceFilesGenerator {
         return grammar.getProductions(grammar.getStartSymbolCode()).get(0);
     }
 
+    private int getProductionsCount() {
+        int result = 0;
+        for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+            for (Production production : grammar.getProductions(i)) {
+                result = Math.max(result, production.getId() + 1);
+            }
+        }
+        return result;
+    }
+
+    private int getTerminalsCount() {
+        return grammar.getSymbolsCount() - grammar.getNonTerminalsCount();
+    }
+
     private void generateTokenSourceFiles() throws IOException {
         String grammarName = grammar.getGrammarName();
         String subPackage = "tokens";
@@ -191,11 +412,13 @@ public class SourceFilesGenerator {
             indentWriter.println();
 
             indentWriter.println("private final String symbol;");
+            indentWriter.println("private final int kind;");
             indentWriter.println();
 
-            indentWriter.printf("public Abstract%sToken(String symbol)", grammarName);
+            indentWriter.printf("public Abstract%sToken(String symbol, int kind)", grammarName);
             indentWriter.printlnLeftBrace();
             indentWriter.println("this.symbol = symbol;");
+            indentWriter.println("this.kind = kind;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
@@ -203,6 +426,12 @@ public class SourceFilesGenerator {
             indentWriter.printlnLeftBrace();
             indentWriter.println("return symbol;");
             indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int getKind()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return kind;");
+            indentWriter.printlnRightBrace();
             indentWriter.printlnRightBrace();
         }
 
@@ -219,7 +448,8 @@ public class SourceFilesGenerator {
 
             indentWriter.printf("private EOF%sToken()", grammarName);
             indentWriter.printlnLeftBrace();
-            indentWriter.println("super(\"$\");");
+            indentWriter.printf("super(\"$\", %d);", getTerminalsCount());
+            indentWriter.println();
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
@@ -242,12 +472,25 @@ public class SourceFilesGenerator {
 
                 ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(i);
                 printAttributeFields(indentWriter, attributes, false);
+                if (attributes.isEmpty()) {
+                    indentWriter.printf("private static final %sToken instance = new %sToken();", symbolName, symbolName);
+                    indentWriter.println();
+                    indentWriter.println();
+                }
 
                 indentWriter.printf("public %sToken()", symbolName);
                 indentWriter.printlnLeftBrace();
-                indentWriter.printf("super(\"%s\");", grammar.getToken(symbolName));
+                indentWriter.printf("super(\"%s\", %d);", grammar.getToken(symbolName), i - grammar.getNonTerminalsCount());
                 indentWriter.println();
                 indentWriter.printlnRightBrace();
+
+                if (attributes.isEmpty()) {
+                    indentWriter.println();
+                    indentWriter.printf("public static %sToken getInstance()", symbolName);
+                    indentWriter.printlnLeftBrace();
+                    indentWriter.println("return instance;");
+                    indentWriter.printlnRightBrace();
+                }
                 indentWriter.printlnRightBrace();
             }
         }
@@ -270,7 +513,11 @@ public class SourceFilesGenerator {
             indentWriter.printlnLeftBrace();
 
             indentWriter.println("boolean isEmpty();");
-            indentWriter.println("int getCurrentPosition();");
+            indentWriter.println("long getCurrentPosition();");
+            indentWriter.println("long getCurrentEnd();");
+            indentWriter.println("/** @return the current position clamped to the int offsets of ParseException */");
+            indentWriter.println("int getErrorOffset();");
+            indentWriter.println("int getCurrentKind();");
             indentWriter.printf("Abstract%sToken getCurrentToken();", grammarName);
             indentWriter.println();
             indentWriter.println("void nextToken() throws ParseException;");
@@ -278,12 +525,32 @@ public class SourceFilesGenerator {
             indentWriter.printlnRightBrace();
         }
 
+        LexerAutomaton lexerAutomaton = new LexerAutomaton(grammar);
+        boolean isByteInput = lexerAutomaton.isASCII();
+        String bufferType = isByteInput ? "byte" : "char";
         try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, suffix)) {
             printPackage(indentWriter, subPackage);
 
             indentWriter.println("import java.io.IOException;");
             indentWriter.println("import java.io.InputStream;");
+            if (!isByteInput) {
+                indentWriter.println("import java.io.InputStreamReader;");
+                indentWriter.println("import java.io.Reader;");
+            }
+            indentWriter.println("import java.nio.ByteBuffer;");
+            if (!isByteInput) {
+                indentWriter.println("import java.nio.CharBuffer;");
+            }
+            indentWriter.println("import java.nio.channels.FileChannel;");
+            if (!isByteInput) {
+                indentWriter.println("import java.nio.charset.CharsetDecoder;");
+                indentWriter.println("import java.nio.charset.CoderResult;");
+            }
+            indentWriter.println("import java.nio.charset.StandardCharsets;");
+            indentWriter.println("import java.nio.file.Path;");
+            indentWriter.println("import java.nio.file.StandardOpenOption;");
             indentWriter.println("import java.text.ParseException;");
+            indentWriter.println("import java.util.Arrays;");
             indentWriter.printf("import %s.tokens.*;", grammarPackage);
             indentWriter.println();
             indentWriter.println();
@@ -292,36 +559,190 @@ public class SourceFilesGenerator {
             indentWriter.printlnLeftBrace();
             indentWriter.println();
 
-            indentWriter.println("private InputStream inputStream;");
-            indentWriter.println("private String buffer = \"\";");
-            indentWriter.println("private int currentCharacter;");
-            indentWriter.println("private int currentPosition = 0;");
+            indentWriter.printf("private static final int EOF_KIND = %d;", getTerminalsCount());
+            indentWriter.println();
+            indentWriter.printf("private static final int CLASSES_COUNT = %d;", lexerAutomaton.getClassesCount());
+            indentWriter.println();
+            printPackedArray(indentWriter, "CHARACTER_CLASSES", lexerAutomaton.getCharacterClasses());
+            printPackedArray(indentWriter, "TRANSITIONS", lexerAutomaton.getTransitions());
+            printPackedArray(indentWriter, "ACCEPTS", lexerAutomaton.getAccepts());
+            indentWriter.println();
+
+            indentWriter.printf("private static final int BLOCK_SIZE = %d;", INPUT_BLOCK_SIZE);
+            indentWriter.println();
+            indentWriter.println("private static final long REGION_SIZE = 1L << 30;");
+            indentWriter.println("private static final int REGIONS_OVERLAP = 3;");
+            indentWriter.println();
+
+            if (isByteInput) {
+                indentWriter.println("private InputStream inputStream;");
+            } else {
+                indentWriter.println("private Reader reader;");
+                indentWriter.println("private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();");
+            }
+            indentWriter.println("private ByteBuffer[] regions;");
+            indentWriter.println("private int regionIndex = 0;");
+            indentWriter.printf("private %s[] buffer = new %s[BLOCK_SIZE];", bufferType, bufferType);
+            indentWriter.println();
+            indentWriter.println("private int bufferStart = 0;");
+            indentWriter.println("private int bufferEnd = 0;");
+            indentWriter.println("private boolean isEOF = false;");
+            indentWriter.println("private long bufferPosition = 0;");
+            indentWriter.println("private long currentPosition = 0;");
+            indentWriter.println("private long currentEnd = 0;");
+            indentWriter.println("private int currentKind;");
             indentWriter.printf("private Abstract%sToken currentToken;", grammarName);
             indentWriter.println();
             indentWriter.println();
 
             indentWriter.printf("public %sLexicalAnalyzer(InputStream inputStream) throws ParseException", grammarName);
             indentWriter.printlnLeftBrace();
-            indentWriter.println("this.inputStream = inputStream;");
+            if (isByteInput) {
+                indentWriter.println("this.inputStream = inputStream;");
+            } else {
+                indentWriter.println("reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8.newDecoder());");
+            }
+            indentWriter.println("regions = null;");
+            indentWriter.println("nextToken();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public %sLexicalAnalyzer(Path path) throws IOException, ParseException", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println(isByteInput ? "inputStream = null;" : "reader = null;");
+            indentWriter.println("regions = mapRegions(path);");
+            indentWriter.println("nextToken();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public %sLexicalAnalyzer(ByteBuffer input) throws ParseException", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println(isByteInput ? "inputStream = null;" : "reader = null;");
+            indentWriter.println("regions = new ByteBuffer[]{input};");
+            indentWriter.println("nextToken();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public void reset(InputStream inputStream) throws ParseException");
+            indentWriter.printlnLeftBrace();
+            if (isByteInput) {
+                indentWriter.println("this.inputStream = inputStream;");
+            } else {
+                indentWriter.println("reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8.newDecoder());");
+            }
+            indentWriter.println("regions = null;");
+            indentWriter.println("reset();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public void reset(ByteBuffer input) throws ParseException");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println(isByteInput ? "inputStream = null;" : "reader = null;");
+            indentWriter.println("regions = new ByteBuffer[]{input};");
+            indentWriter.println("reset();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private void reset() throws ParseException");
+            indentWriter.printlnLeftBrace();
+            if (!isByteInput) {
+                indentWriter.println("decoder.reset();");
+            }
+            indentWriter.println("regionIndex = 0;");
+            indentWriter.println("bufferStart = 0;");
+            indentWriter.println("bufferEnd = 0;");
+            indentWriter.println("isEOF = false;");
+            indentWriter.println("bufferPosition = 0;");
             indentWriter.println("nextToken();");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.print("private void nextCharacter() throws ParseException");
+            printMapRegions(indentWriter);
+
+            indentWriter.print("private int peekCharacter(int offset) throws ParseException");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("while (bufferStart + offset >= bufferEnd)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (isEOF)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return -1;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("fillBuffer();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println(isByteInput ? "return buffer[bufferStart + offset] & 0xff;" : "return buffer[bufferStart + offset];");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private void fillBuffer() throws ParseException");
             indentWriter.printlnLeftBrace();
+            indentWriter.print("if (bufferStart > 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("System.arraycopy(buffer, bufferStart, buffer, 0, bufferEnd - bufferStart);");
+            indentWriter.println("bufferEnd -= bufferStart;");
+            indentWriter.println("bufferStart = 0;");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("if (2 * bufferEnd > buffer.length)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("buffer = Arrays.copyOf(buffer, 2 * buffer.length);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
             indentWriter.print("try");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("currentPosition++;");
-            indentWriter.println("currentCharacter = inputStream.read();");
-            indentWriter.print("if (currentCharacter != -1 && !isBlank(currentCharacter))");
+            indentWriter.println("int count = readBlock();");
+            indentWriter.print("if (count == -1)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("isEOF = true;");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("else");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("buffer += (char) currentCharacter;");
+            indentWriter.println("bufferEnd += count;");
             indentWriter.printlnRightBrace();
             indentWriter.printlnRightBrace();
             indentWriter.print("catch (IOException e)");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("throw new ParseException(e.getMessage(), currentPosition);");
+            indentWriter.println("throw new ParseException(e.getMessage(), toErrorOffset(bufferPosition + bufferEnd - bufferStart));");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            if (isByteInput) {
+                printByteReadBlock(indentWriter);
+            } else {
+                printCharReadBlock(indentWriter);
+            }
+
+            indentWriter.print("private void nextRegion()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int position = (int) (regions[regionIndex].position() - REGION_SIZE);");
+            indentWriter.println("regions[regionIndex++] = null;");
+            indentWriter.println("regions[regionIndex].position(position);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private String getIllegalCharacter() throws ParseException");
+            indentWriter.printlnLeftBrace();
+            if (isByteInput) {
+                indentWriter.println("int length = 1;");
+                indentWriter.print("if (peekCharacter(0) >= 0xc0)");
+                indentWriter.printlnLeftBrace();
+                indentWriter.print("while (length < 4 && (peekCharacter(length) & 0xc0) == 0x80)");
+                indentWriter.printlnLeftBrace();
+                indentWriter.println("length++;");
+                indentWriter.printlnRightBrace();
+                indentWriter.printlnRightBrace();
+                indentWriter.println("return new String(buffer, bufferStart, length, StandardCharsets.UTF_8);");
+            } else {
+                indentWriter.println("int length = Character.isHighSurrogate((char) peekCharacter(0)) && peekCharacter(1) != -1 ? 2 : 1;");
+                indentWriter.println("return new String(buffer, bufferStart, length);");
+            }
             indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private void skipCharacters(int count)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("bufferStart += count;");
+            indentWriter.println("bufferPosition += count;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
@@ -331,24 +752,60 @@ public class SourceFilesGenerator {
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
+            indentWriter.print("private int getCharacterClass(int character)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return character < CHARACTER_CLASSES.length ? CHARACTER_CLASSES[character] : 0;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
             indentWriter.println("@Override");
             indentWriter.print("public boolean isEmpty()");
             indentWriter.printlnLeftBrace();
-            indentWriter.printf("return currentCharacter == -1 && currentToken == EOF%sToken.getInstance();", grammarName);
-            indentWriter.println();
+            indentWriter.println("return currentKind == EOF_KIND;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
             indentWriter.println("@Override");
-            indentWriter.print("public int getCurrentPosition()");
+            indentWriter.print("public long getCurrentPosition()");
             indentWriter.printlnLeftBrace();
             indentWriter.println("return currentPosition;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
+            indentWriter.println("@Override");
+            indentWriter.print("public long getCurrentEnd()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return currentEnd;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public int getErrorOffset()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return toErrorOffset(currentPosition);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private static int toErrorOffset(long position)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return (int) Math.min(position, Integer.MAX_VALUE);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public int getCurrentKind()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return currentKind;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
             indentWriter.println("@Override");
             indentWriter.printf("public Abstract%sToken getCurrentToken()", grammarName);
             indentWriter.printlnLeftBrace();
+            indentWriter.print("if (currentToken == null)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("currentToken = createToken(currentKind);");
+            indentWriter.printlnRightBrace();
             indentWriter.println("return currentToken;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
@@ -356,47 +813,155 @@ public class SourceFilesGenerator {
             indentWriter.println("@Override");
             indentWriter.print("public void nextToken() throws ParseException");
             indentWriter.printlnLeftBrace();
-            indentWriter.print("while (isBlank(currentCharacter))");
+            indentWriter.print("while (isBlank(peekCharacter(0)))");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("skipCharacters(1);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("currentPosition = bufferPosition;");
+            indentWriter.println("currentToken = null;");
+            indentWriter.println();
+
+            indentWriter.println("int character = peekCharacter(0);");
+            indentWriter.print("if (character == -1)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("currentEnd = currentPosition;");
+            indentWriter.println("currentKind = EOF_KIND;");
+            indentWriter.println("return;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("int state = 0;");
+            indentWriter.println("int kind = -1;");
+            indentWriter.println("int length = 0;");
+            indentWriter.print("for (int i = 0; character != -1; character = peekCharacter(++i))");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("state = TRANSITIONS[state * CLASSES_COUNT + getCharacterClass(character)];");
+            indentWriter.print("if (state < 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("break;");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("if (ACCEPTS[state] >= 0)");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("nextCharacter();");
+            indentWriter.println("kind = ACCEPTS[state];");
+            indentWriter.println("length = i + 1;");
+            indentWriter.printlnRightBrace();
             indentWriter.printlnRightBrace();
-            indentWriter.print("while (currentCharacter != -1 && !isBlank(currentCharacter))");
+            indentWriter.print("if (kind < 0)");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("nextCharacter();");
+            indentWriter.println("throw new ParseException(String.format(\"Illegal character '%s' at position %d\", getIllegalCharacter(), currentPosition), getErrorOffset());");
             indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("skipCharacters(length);");
+            indentWriter.println("currentEnd = bufferPosition;");
+            indentWriter.println("currentKind = kind;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-            boolean isFirst = true;
+            indentWriter.printf("private static Abstract%sToken createToken(int kind)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("switch (kind)");
+            indentWriter.printlnLeftBrace();
             for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
-                if (isFirst) {
-                    indentWriter.printIndent();
-                    isFirst = false;
+                indentWriter.printf("case %d:", i - grammar.getNonTerminalsCount());
+                indentWriter.println();
+                String symbolName = grammar.getSymbolName(i);
+                if (grammar.getSymbolAttributes().get(i).isEmpty()) {
+                    indentWriter.printf("%sreturn %sToken.getInstance();", indentWriter.getTab(), symbolName);
                 } else {
-                    indentWriter.print("else ");
+                    indentWriter.printf("%sreturn new %sToken();", indentWriter.getTab(), symbolName);
                 }
-
-                String symbolName = grammar.getSymbolName(i);
-                indentWriter.printfWithoutIndent("if (buffer.equals(\"%s\"))", grammar.getToken(symbolName));
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("currentToken = new %sToken();", symbolName);
                 indentWriter.println();
-                indentWriter.printlnRightBrace();
             }
-            indentWriter.print("else if (!buffer.equals(\"\"))");
-            indentWriter.printlnLeftBrace();
-            indentWriter.println("throw new ParseException(String.format(\"Illegal character '%c' at position %d\", currentCharacter, currentPosition), currentPosition);");
-            indentWriter.printlnRightBrace();
-            indentWriter.print("else if (currentCharacter == -1)");
-            indentWriter.printlnLeftBrace();
-            indentWriter.printf("currentToken = EOF%sToken.getInstance();", grammarName);
+            indentWriter.println("case EOF_KIND:");
+            indentWriter.printf("%sreturn EOF%sToken.getInstance();", indentWriter.getTab(), grammarName);
+            indentWriter.println();
+            indentWriter.println("default:");
+            indentWriter.printf("%sthrow new IllegalArgumentException(\"Illegal token kind: \" + kind);", indentWriter.getTab());
             indentWriter.println();
             indentWriter.printlnRightBrace();
-            indentWriter.println("buffer = \"\";");
             indentWriter.printlnRightBrace();
 
+            printUnpackMethods(indentWriter, lexerAutomaton.getCharacterClasses(), lexerAutomaton.getTransitions(), lexerAutomaton.getAccepts());
+
             indentWriter.printlnRightBrace();
         }
     }
 
+    private static void printMapRegions(IndentWriter indentWriter) throws IOException {
+        indentWriter.print("private static ByteBuffer[] mapRegions(Path path) throws IOException");
+        indentWriter.printlnLeftBrace();
+        indentWriter.print("try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("long size = channel.size();");
+        indentWriter.println("ByteBuffer[] result = new ByteBuffer[(int) Math.max(1, (size + REGION_SIZE - 1) / REGION_SIZE)];");
+        indentWriter.print("for (int i = 0; i < result.length; i++)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("long start = i * REGION_SIZE;");
+        indentWriter.println("result[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION_SIZE + REGIONS_OVERLAP, size - start));");
+        indentWriter.printlnRightBrace();
+        indentWriter.println("return result;");
+        indentWriter.printlnRightBrace();
+        indentWriter.printlnRightBrace();
+        indentWriter.println();
+    }
+
+    private static void printByteReadBlock(IndentWriter indentWriter) throws IOException {
+        indentWriter.print("private int readBlock() throws IOException");
+        indentWriter.printlnLeftBrace();
+        indentWriter.print("if (regions == null)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("return inputStream.read(buffer, bufferEnd, buffer.length - bufferEnd);");
+        indentWriter.printlnRightBrace();
+        indentWriter.println();
+
+        indentWriter.print("while (!regions[regionIndex].hasRemaining())");
+        indentWriter.printlnLeftBrace();
+        indentWriter.print("if (regionIndex + 1 == regions.length)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("return -1;");
+        indentWriter.printlnRightBrace();
+        indentWriter.println("nextRegion();");
+        indentWriter.printlnRightBrace();
+        indentWriter.println("int count = Math.min(regions[regionIndex].remaining(), buffer.length - bufferEnd);");
+        indentWriter.println("regions[regionIndex].get(buffer, bufferEnd, count);");
+        indentWriter.println("return count;");
+        indentWriter.printlnRightBrace();
+        indentWriter.println();
+    }
+
+    private static void printCharReadBlock(IndentWriter indentWriter) throws IOException {
+        indentWriter.print("private int readBlock() throws IOException");
+        indentWriter.printlnLeftBrace();
+        indentWriter.print("if (regions == null)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("return reader.read(buffer, bufferEnd, buffer.length - bufferEnd);");
+        indentWriter.printlnRightBrace();
+        indentWriter.println();
+
+        indentWriter.println("CharBuffer target = CharBuffer.wrap(buffer, bufferEnd, buffer.length - bufferEnd);");
+        indentWriter.print("while (true)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("boolean isLastRegion = regionIndex + 1 == regions.length;");
+        indentWriter.println("CoderResult result = decoder.decode(regions[regionIndex], target, isLastRegion);");
+        indentWriter.print("if (result.isError())");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("result.throwException();");
+        indentWriter.printlnRightBrace();
+        indentWriter.print("if (target.position() > bufferEnd)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("return target.position() - bufferEnd;");
+        indentWriter.printlnRightBrace();
+        indentWriter.print("if (isLastRegion)");
+        indentWriter.printlnLeftBrace();
+        indentWriter.println("return -1;");
+        indentWriter.printlnRightBrace();
+        indentWriter.println("nextRegion();");
+        indentWriter.printlnRightBrace();
+        indentWriter.printlnRightBrace();
+        indentWriter.println();
+    }
+
     private void generateParseTreesSourceFiles() throws IOException {
         String grammarName = grammar.getGrammarName();
         String subPackage = "trees";
@@ -497,325 +1062,1916 @@ public class SourceFilesGenerator {
         }
     }
 
-    private void generateStatesSourceFiles() throws IOException {
+    private void generateParseTreeArenaSourceFiles() throws IOException {
         String grammarName = grammar.getGrammarName();
-        String grammarPackage = grammar.getGrammarPackage();
-        String subPackage = "states";
-        String suffix = "State";
-        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "Pair")) {
+        String subPackage = "trees";
+        ValueStacks valueStacks = new ValueStacks(grammar);
+        Map<String, String> slotTypes = valueStacks.getElementTypes();
+        String[] arrays = {"symbols", "productions", "firstChildren", "nextSiblings", "starts", "ends"};
+        String[] getters = {"Symbol", "Production", "FirstChild", "NextSibling", "Start", "End"};
+        String[] types = {"int", "int", "int", "int", "long", "long"};
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseTreeArena")) {
             printPackage(indentWriter, subPackage);
 
-            indentWriter.printf("import %s.trees.Abstract%sParseTree;", grammarPackage, grammarName);
-            indentWriter.println();
+            indentWriter.println("import java.util.Arrays;");
             indentWriter.println();
 
-            indentWriter.printf("public class %sPair", grammarName);
+            indentWriter.printf("public class %sParseTreeArena", grammarName);
             indentWriter.printlnLeftBrace();
             indentWriter.println();
 
-            indentWriter.printf("private final Abstract%sState state;", grammarName);
+            indentWriter.println("public static final int NONE = -1;");
             indentWriter.println();
-            indentWriter.printf("private final Abstract%sParseTree parseTree;", grammarName);
+            indentWriter.printf("private static final int NON_TERMINALS_COUNT = %d;", grammar.getNonTerminalsCount());
             indentWriter.println();
+            indentWriter.print("private static final String[] SYMBOL_NAMES = {");
+            for (int i = 0; i < grammar.getSymbolsCount(); i++) {
+                indentWriter.printfWithoutIndent(i != 0 ? ", \"%s\"" : "\"%s\"", grammar.getSymbolName(i));
+            }
+            indentWriter.printWithoutIndent("};");
             indentWriter.println();
-
-            indentWriter.printf("public %sPair(Abstract%sState state, Abstract%sParseTree parseTree)", grammarName, grammarName, grammarName);
-            indentWriter.printlnLeftBrace();
-            indentWriter.println("this.state = state;");
-            indentWriter.println("this.parseTree = parseTree;");
-            indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.printf("public Abstract%sState getState()", grammarName);
+            indentWriter.println("private int size = 0;");
+            for (int i = 0; i < arrays.length; i++) {
+                indentWriter.printf("private %s[] %s = new %s[%d];", types[i], arrays[i], types[i], INITIAL_ARENA_SIZE);
+                indentWriter.println();
+            }
+            for (Map.Entry<String, String> entry : slotTypes.entrySet()) {
+                indentWriter.printf("private %s[] %s = new %s[%d];", entry.getValue(), entry.getKey(), entry.getValue(), INITIAL_ARENA_SIZE);
+                indentWriter.println();
+            }
+            indentWriter.println();
+
+            indentWriter.print("public static String getSymbolName(int symbol)");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("return state;");
+            indentWriter.println("return SYMBOL_NAMES[symbol];");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.printf("public Abstract%sParseTree getParseTree()", grammarName);
+            indentWriter.print("public int size()");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("return parseTree;");
+            indentWriter.println("return size;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public void clear()");
+            indentWriter.printlnLeftBrace();
+            for (Map.Entry<String, String> entry : slotTypes.entrySet()) {
+                if (entry.getValue().equals("Object")) {
+                    indentWriter.printf("Arrays.fill(%s, 0, size, null);", entry.getKey());
+                    indentWriter.println();
+                }
+            }
+            indentWriter.println("size = 0;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int addToken(int symbol, long start, long end)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int node = allocate();");
+            indentWriter.println("symbols[node] = symbol;");
+            indentWriter.println("productions[node] = NONE;");
+            indentWriter.println("firstChildren[node] = NONE;");
+            indentWriter.println("nextSiblings[node] = NONE;");
+            indentWriter.println("starts[node] = start;");
+            indentWriter.println("ends[node] = end;");
+            indentWriter.println("return node;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int addNode(int symbol, int production, int[] children, int from, int count, long position)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int node = allocate();");
+            indentWriter.println("symbols[node] = symbol;");
+            indentWriter.println("productions[node] = production;");
+            indentWriter.println("nextSiblings[node] = NONE;");
+            indentWriter.print("if (count == 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("firstChildren[node] = NONE;");
+            indentWriter.println("starts[node] = position;");
+            indentWriter.println("ends[node] = position;");
+            indentWriter.println("return node;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("int last = from + count - 1;");
+            indentWriter.print("for (int i = from; i < last; i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("nextSiblings[children[i]] = children[i + 1];");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("firstChildren[node] = children[from];");
+            indentWriter.println("starts[node] = starts[children[from]];");
+            indentWriter.println("ends[node] = ends[children[last]];");
+            indentWriter.println("return node;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private int allocate()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (size == symbols.length)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int length = 2 * size;");
+            for (String array : arrays) {
+                indentWriter.printf("%s = Arrays.copyOf(%s, length);", array, array);
+                indentWriter.println();
+            }
+            for (String slot : slotTypes.keySet()) {
+                indentWriter.printf("%s = Arrays.copyOf(%s, length);", slot, slot);
+                indentWriter.println();
+            }
+            indentWriter.printlnRightBrace();
+            indentWriter.println("return size++;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            for (int i = 0; i < arrays.length; i++) {
+                indentWriter.printf("public %s get%s(int node)", types[i], getters[i]);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("return %s[node];", arrays[i]);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.println();
+            }
+
+            indentWriter.print("public boolean isTerminal(int node)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return symbols[node] >= NON_TERMINALS_COUNT;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            for (int i = 0; i < grammar.getSymbolsCount(); i++) {
+                if (i == grammar.getStartSymbolCode()) {
+                    continue;
+                }
+                ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(i);
+                for (int j = 0; j < attributes.size(); j++) {
+                    Attribute attribute = attributes.get(j);
+                    indentWriter.printf("public %s %s(int node)", attribute.getType(), getAttributeGetterName(i, attribute));
+                    indentWriter.printlnLeftBrace();
+                    indentWriter.printf("return %s;", valueStacks.getValue(i, attribute.getName(), "node"));
+                    indentWriter.println();
+                    indentWriter.printlnRightBrace();
+                    indentWriter.println();
+
+                    indentWriter.printf("public void %s(int node, %s value)", getAttributeSetterName(i, attribute), attribute.getType());
+                    indentWriter.printlnLeftBrace();
+                    indentWriter.printf("%s[node] = value;", valueStacks.getStack(i, j));
+                    indentWriter.println();
+                    indentWriter.printlnRightBrace();
+                    indentWriter.println();
+                }
+            }
+
+            indentWriter.printf("public %sParseTreeCursor getCursor(int node)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return new %sParseTreeCursor(this, node);", grammarName);
+            indentWriter.println();
             indentWriter.printlnRightBrace();
 
             indentWriter.printlnRightBrace();
         }
 
-        try (IndentWriter indentWriter = getIndentWriter(subPackage, "Abstract" + grammarName, suffix)) {
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseTreeCursor")) {
             printPackage(indentWriter, subPackage);
 
-            indentWriter.println("import java.util.Deque;");
-            indentWriter.println("import java.text.ParseException;");
-            indentWriter.printf("import %s.analyzers.I%sLexicalAnalyzer;", grammarPackage, grammarName);
-            indentWriter.println();
+            indentWriter.println("import java.util.Arrays;");
             indentWriter.println();
 
-            indentWriter.printf("public abstract class Abstract%sState", grammarName);
+            indentWriter.printf("public class %sParseTreeCursor", grammarName);
             indentWriter.printlnLeftBrace();
             indentWriter.println();
 
-            indentWriter.println("private final int[] next;");
+            indentWriter.printf("private final %sParseTreeArena arena;", grammarName);
+            indentWriter.println();
+            indentWriter.println("private int node;");
+            indentWriter.printf("private int[] ancestors = new int[%d];", INITIAL_STACK_SIZE);
+            indentWriter.println();
+            indentWriter.println("private int depth = 0;");
             indentWriter.println();
 
-            indentWriter.printf("public Abstract%sState(int[] next)", grammarName);
+            indentWriter.printf("public %sParseTreeCursor(%sParseTreeArena arena, int node)", grammarName, grammarName);
             indentWriter.printlnLeftBrace();
-            indentWriter.println("this.next = next;");
+            indentWriter.println("this.arena = arena;");
+            indentWriter.println("this.node = node;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.print("public int next(int symbol)");
+            indentWriter.printf("public %sParseTreeArena getArena()", grammarName);
             indentWriter.printlnLeftBrace();
-            indentWriter.println("return next[symbol];");
+            indentWriter.println("return arena;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.printf("public abstract boolean accept(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException;", grammarName, grammarName);
+            indentWriter.print("public void reset(int node)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("this.node = node;");
+            indentWriter.println("depth = 0;");
+            indentWriter.printlnRightBrace();
             indentWriter.println();
 
+            indentWriter.print("public int getNode()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return node;");
             indentWriter.printlnRightBrace();
-        }
+            indentWriter.println();
 
-        Production startProduction = getStartProduction();
-        Item item = new Item(grammar, grammar.getStartSymbolCode(), startProduction, 1);
+            indentWriter.print("public int getDepth()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return depth;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-        ArrayList<Automaton.State> states = automaton.getStates();
-        ArrayList<Item[]> reduces = automaton.getReduces();
-        for (int i = 0; i < states.size(); i++) {
-            try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, suffix + i)) {
-                printPackage(indentWriter, subPackage);
+            indentWriter.print("public int getSymbol()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return arena.getSymbol(node);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                indentWriter.println("import java.util.Deque;");
-                indentWriter.println("import java.text.ParseException;");
-                indentWriter.printf("import %s.analyzers.I%sLexicalAnalyzer;", grammarPackage, grammarName);
-                indentWriter.println();
-                indentWriter.printf("import %s.parser.%sParser;", grammarPackage, grammarName);
-                indentWriter.println();
-                indentWriter.printf("import %s.trees.*;", grammarPackage, grammarName);
-                indentWriter.println();
-                indentWriter.printf("import %s.tokens.*;", grammarPackage, grammarName);
-                indentWriter.println();
-                indentWriter.println();
+            indentWriter.print("public String getSymbolName()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return %sParseTreeArena.getSymbolName(arena.getSymbol(node));", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                indentWriter.printf("public class %sState%d extends Abstract%sState", grammarName, i, grammarName);
-                indentWriter.printlnLeftBrace();
-                indentWriter.println();
+            indentWriter.print("public boolean isTerminal()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return arena.isTerminal(node);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                Automaton.State state = states.get(i);
-                int[] step = state.getStep();
-                indentWriter.printf("public %sState%d()", grammarName, i);
+            for (String[] getter : new String[][]{{"int", "Production"}, {"long", "Start"}, {"long", "End"}}) {
+                indentWriter.printf("public %s get%s()", getter[0], getter[1]);
                 indentWriter.printlnLeftBrace();
-                indentWriter.print("super(new int[]{");
-
-                boolean isFirst = true;
-                for (int j : step) {
-                    if (isFirst) {
-                        isFirst = false;
-                    } else {
-                        indentWriter.printWithoutIndent(", ");
-                    }
-
-                    indentWriter.printWithoutIndent(Integer.toString(j));
-                }
-
-                indentWriter.printWithoutIndent("});");
+                indentWriter.printf("return arena.get%s(node);", getter[1]);
                 indentWriter.println();
                 indentWriter.printlnRightBrace();
                 indentWriter.println();
+            }
 
-                indentWriter.println("@Override");
-                indentWriter.printf("public boolean accept(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", grammarName, grammarName);
-                indentWriter.printlnLeftBrace();
-                indentWriter.print("if (lexicalAnalyzer.isEmpty())");
-                indentWriter.printlnLeftBrace();
+            indentWriter.print("public boolean gotoFirstChild()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int child = arena.getFirstChild(node);");
+            indentWriter.printf("if (child == %sParseTreeArena.NONE)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return false;");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("if (depth == ancestors.length)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("ancestors = Arrays.copyOf(ancestors, 2 * depth);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("ancestors[depth++] = node;");
+            indentWriter.println("node = child;");
+            indentWriter.println("return true;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                Item[] items = reduces.get(i);
-                if (state.getItems().contains(item)) {
-                    indentWriter.println("return true;");
-                    indentWriter.printlnRightBrace();
-                    indentWriter.print("else");
-                    indentWriter.printlnLeftBrace();
-                    indentWriter.println("throw new ParseException(\"Unexpected token: \" + lexicalAnalyzer.getCurrentToken(), lexicalAnalyzer.getCurrentPosition());");
-                } else {
-                    if (items[grammar.getSymbolsCount()] == null) {
-                        indentWriter.println("throw new ParseException(\"Unexpected EOF\", lexicalAnalyzer.getCurrentPosition());");
-                    } else {
-                        printReduction(indentWriter, items[grammar.getSymbolsCount()]);
-                        indentWriter.println("return false;");
-                    }
+            indentWriter.print("public boolean gotoNextSibling()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int sibling = arena.getNextSibling(node);");
+            indentWriter.printf("if (depth == 0 || sibling == %sParseTreeArena.NONE)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return false;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("node = sibling;");
+            indentWriter.println("return true;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                    indentWriter.printlnRightBrace();
+            indentWriter.print("public boolean gotoParent()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (depth == 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return false;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("node = ancestors[--depth];");
+            indentWriter.println("return true;");
+            indentWriter.printlnRightBrace();
 
-                    indentWriter.print("else");
+            for (int i = 0; i < grammar.getSymbolsCount(); i++) {
+                if (i == grammar.getStartSymbolCode()) {
+                    continue;
+                }
+                for (Attribute attribute : grammar.getSymbolAttributes().get(i)) {
+                    String getterName = getAttributeGetterName(i, attribute);
+                    indentWriter.println();
+                    indentWriter.printf("public %s %s()", attribute.getType(), getterName);
                     indentWriter.printlnLeftBrace();
-                    indentWriter.printf("Abstract%sToken token = lexicalAnalyzer.getCurrentToken();", grammarName);
+                    indentWriter.printf("return arena.%s(node);", getterName);
                     indentWriter.println();
+                    indentWriter.printlnRightBrace();
+                }
+            }
 
-                    isFirst = true;
-                    boolean needsReturn = false;
-                    for (int j = grammar.getNonTerminalsCount(); j < grammar.getSymbolsCount(); j++) {
-                        String terminal = grammar.getSymbolName(j);
-
-                        if (step[j] != -1 || items[j] != null) {
-                            if (isFirst) {
-                                indentWriter.printIndent();
-                                isFirst = false;
-                            } else {
-                                indentWriter.print("else ");
-                            }
-
-                            indentWriter.printfWithoutIndent("if (token instanceof %sToken)", terminal);
-                            indentWriter.printlnLeftBrace();
-                            if (step[j] != -1) {
-                                indentWriter.printf("stack.add(new %sPair(new %sState%d(), new Terminal%sParseTree(token)));", grammarName, grammarName, step[j], grammarName);
-                                indentWriter.println();
-                                indentWriter.println("lexicalAnalyzer.nextToken();");
-                            } else {
-                                printReduction(indentWriter, items[j]);
-                            }
-                            indentWriter.printlnRightBrace();
-                            needsReturn = true;
-                        }
-                    }
+            indentWriter.printlnRightBrace();
+        }
+    }
 
-                    if (needsReturn) {
-                        indentWriter.print("else");
-                        indentWriter.printlnLeftBrace();
-                        indentWriter.println("throw new ParseException(\"Unexpected token: \" + token, lexicalAnalyzer.getCurrentPosition());");
-                        indentWriter.printlnRightBrace();
+    private String getAttributeGetterName(int symbol, Attribute attribute) {
+        return "get" + getAttributeAccessorSuffix(symbol, attribute);
+    }
 
-                        indentWriter.println("return false;");
-                    }
-                }
+    private String getAttributeSetterName(int symbol, Attribute attribute) {
+        return "set" + getAttributeAccessorSuffix(symbol, attribute);
+    }
 
-                indentWriter.printlnRightBrace();
-                indentWriter.printlnRightBrace();
-                indentWriter.printlnRightBrace();
+    private String getAttributeAccessorSuffix(int symbol, Attribute attribute) {
+        String attributeName = attribute.getName();
+        return String.format("%s%s%s", grammar.getSymbolName(symbol), Character.toUpperCase(attributeName.charAt(0)), attributeName.substring(1));
+    }
+
+    /**
+     * @return the expression reading the attribute of the symbol stored in the given node of the arena
+     */
+    private String getArenaValue(int symbol, String attributeName, String node) {
+        for (Attribute attribute : grammar.getSymbolAttributes().get(symbol)) {
+            if (attribute.getName().equals(attributeName)) {
+                return String.format("arena.%s(%s)", getAttributeGetterName(symbol, attribute), node);
             }
         }
+
+        throw new IllegalArgumentException(String.format("Symbol %s has no attribute %s", grammar.getSymbolName(symbol), attributeName));
     }
 
-    private void generateParserSourceFile() throws IOException {
+    private void generateParseEventLogSourceFile() throws IOException {
         String grammarName = grammar.getGrammarName();
-        String grammarPackage = grammar.getGrammarPackage();
-        String subPackage = "parser";
-        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "Parser")) {
+        String subPackage = "trees";
+        String symbolName = grammar.getSymbolName(getStartProduction().getRightSide().get(0));
+
+        int productionsCount = getProductionsCount();
+        int[] leftSides = new int[productionsCount];
+        int[] rightSideLengths = new int[productionsCount];
+        for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+            for (Production production : grammar.getProductions(i)) {
+                leftSides[production.getId()] = i;
+                rightSideLengths[production.getId()] = production.getRightSide().size();
+            }
+        }
+
+        boolean hasAttributedTerminals = hasAttributedTerminals();
+        String tokenType = String.format("Abstract%sToken", grammarName);
+        String[] tokenArrays = hasAttributedTerminals ? new String[]{"kinds", "starts", "ends", "tokens"} : new String[]{"kinds", "starts", "ends"};
+        String[] tokenTypes = {"int", "long", "long", tokenType};
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseEventLog")) {
             printPackage(indentWriter, subPackage);
 
-            indentWriter.println("import java.util.Deque;");
-            indentWriter.println("import java.util.ArrayDeque;");
-            indentWriter.println("import java.text.ParseException;");
-            indentWriter.printf("import %s.analyzers.I%sLexicalAnalyzer;", grammarPackage, grammarName);
+            indentWriter.println("import java.util.Arrays;");
+            indentWriter.printf("import %s.tokens.*;", grammar.getGrammarPackage());
             indentWriter.println();
-            indentWriter.printf("import %s.states.*;", grammarPackage);
             indentWriter.println();
-            indentWriter.printf("import %s.trees.*;", grammarPackage);
+
+            indentWriter.printf("public class %sParseEventLog", grammarName);
+            indentWriter.printlnLeftBrace();
             indentWriter.println();
-            indentWriter.printf("import %s.tokens.*;", grammarPackage);
+
+            indentWriter.println("public static final int NONE = -1;");
+            indentWriter.println();
+            indentWriter.printf("private static final int NON_TERMINALS_COUNT = %d;", grammar.getNonTerminalsCount());
+            indentWriter.println();
+            indentWriter.printf("private static final int[] LEFT_SIDES = %s;", Arrays.toString(leftSides).replace('[', '{').replace(']', '}'));
+            indentWriter.println();
+            indentWriter.printf("private static final int[] RIGHT_SIDE_LENGTHS = %s;", Arrays.toString(rightSideLengths).replace('[', '{').replace(']', '}'));
             indentWriter.println();
             indentWriter.println();
 
-            indentWriter.printf("public class %sParser", grammarName);
-            indentWriter.printlnLeftBrace();
+            indentWriter.printf("private int[] events = new int[%d];", INITIAL_ARENA_SIZE);
+            indentWriter.println();
+            indentWriter.println("private int size = 0;");
+            for (int i = 0; i < tokenArrays.length; i++) {
+                indentWriter.printf("private %s[] %s = new %s[%d];", tokenTypes[i], tokenArrays[i], tokenTypes[i], INITIAL_ARENA_SIZE);
+                indentWriter.println();
+            }
+            indentWriter.println("private int tokensCount = 0;");
             indentWriter.println();
 
-            String symbolName = grammar.getSymbolName(getStartProduction().getRightSide().get(0));
+            indentWriter.print("public int size()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return size;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-            indentWriter.printf("public static %sParseTree parse%s(I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", symbolName, symbolName, grammarName);
+            indentWriter.print("public void clear()");
             indentWriter.printlnLeftBrace();
-            indentWriter.printf("Deque<%sPair> stack = new ArrayDeque<>();", grammarName);
+            if (hasAttributedTerminals) {
+                indentWriter.println("Arrays.fill(tokens, 0, tokensCount, null);");
+            }
+            indentWriter.println("size = 0;");
+            indentWriter.println("tokensCount = 0;");
+            indentWriter.printlnRightBrace();
             indentWriter.println();
-            indentWriter.print("while (true)");
+
+            indentWriter.print("public void addToken(int kind, long start, long end)");
             indentWriter.printlnLeftBrace();
-            indentWriter.print("if (getState(stack).accept(stack, lexicalAnalyzer))");
+            indentWriter.print("if (tokensCount == kinds.length)");
             indentWriter.printlnLeftBrace();
-            indentWriter.printf("return extract%s(stack, lexicalAnalyzer);", symbolName);
-            indentWriter.println();
+            indentWriter.println("int length = 2 * tokensCount;");
+            for (String array : tokenArrays) {
+                indentWriter.printf("%s = Arrays.copyOf(%s, length);", array, array);
+                indentWriter.println();
+            }
             indentWriter.printlnRightBrace();
+            indentWriter.println("kinds[tokensCount] = kind;");
+            indentWriter.println("starts[tokensCount] = start;");
+            indentWriter.println("ends[tokensCount] = end;");
+            indentWriter.println("tokensCount++;");
+            indentWriter.println("add(-tokensCount);");
             indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            if (hasAttributedTerminals) {
+                indentWriter.printf("public void addToken(%s token, long start, long end)", tokenType);
+                indentWriter.printlnLeftBrace();
+                indentWriter.println("addToken(token.getKind(), start, end);");
+                indentWriter.println("tokens[tokensCount - 1] = token;");
+                indentWriter.printlnRightBrace();
+                indentWriter.println();
+            }
+
+            indentWriter.print("public void addReduction(int production)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("add(production);");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.printf("public static Abstract%sState getState(Deque<%sPair> stack)", grammarName, grammarName);
+            indentWriter.print("private void add(int event)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (size == events.length)");
             indentWriter.printlnLeftBrace();
-            indentWriter.printf("return !stack.isEmpty() ? stack.getLast().getState() : new %sState0();", grammarName);
+            indentWriter.println("events = Arrays.copyOf(events, 2 * size);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("events[size++] = event;");
+            indentWriter.printlnRightBrace();
             indentWriter.println();
+
+            indentWriter.print("public int getRoot()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return size - 1;");
             indentWriter.printlnRightBrace();
             indentWriter.println();
 
-            indentWriter.printf("public static Abstract%sState getState(int state, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", grammarName, grammarName);
+            indentWriter.print("public boolean isToken(int position)");
             indentWriter.printlnLeftBrace();
-            boolean isFirst = true;
-            int statesCount = automaton.getStates().size();
-            for (int i = 0; i < statesCount; i++) {
-                if (isFirst) {
-                    indentWriter.printIndent();
-                    isFirst = false;
-                } else {
-                    indentWriter.print("else ");
-                }
+            indentWriter.println("return events[position] < 0;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                indentWriter.printfWithoutIndent("if (state == %d)", i);
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("return new %sState%d();", grammarName, i);
-                indentWriter.println();
-                indentWriter.printlnRightBrace();
+            indentWriter.printf("public %s getToken(int position)", tokenType);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int event = events[position];");
+            indentWriter.print("if (event >= 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return null;");
+            indentWriter.printlnRightBrace();
+            if (hasAttributedTerminals) {
+                indentWriter.println("int token = -event - 1;");
+                indentWriter.println("return tokens[token] != null ? tokens[token] : createToken(kinds[token]);");
+            } else {
+                indentWriter.println("return createToken(kinds[-event - 1]);");
             }
-            indentWriter.print("else");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getStart(int position)");
             indentWriter.printlnLeftBrace();
-            indentWriter.println("throw new ParseException(\"Illegal state number: \" + state, lexicalAnalyzer.getCurrentPosition());");
+            indentWriter.println("return events[position] < 0 ? starts[-events[position] - 1] : NONE;");
             indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getEnd(int position)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return events[position] < 0 ? ends[-events[position] - 1] : NONE;");
             indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-            for (int i = 0; i < grammar.getNonTerminalsCount() - 1; i++) {
-                indentWriter.println();
+            indentWriter.print("public int getProduction(int position)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return events[position] >= 0 ? events[position] : NONE;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                String nonTerminal = grammar.getSymbolName(i);
-                indentWriter.printf("public static %sParseTree extract%s(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", nonTerminal, nonTerminal, grammarName, grammarName);
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("Abstract%sParseTree parseTree = stack.pollLast().getParseTree();", grammarName);
-                indentWriter.println();
-                indentWriter.printf("if (parseTree instanceof %sParseTree)", nonTerminal);
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("return (%sParseTree) parseTree;", nonTerminal);
-                indentWriter.println();
-                indentWriter.printlnRightBrace();
-                indentWriter.print("else");
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("throw new ParseException(\"Expected non-terminal '%s'\", lexicalAnalyzer.getCurrentPosition());", nonTerminal);
-                indentWriter.println();
-                indentWriter.printlnRightBrace();
-                indentWriter.printlnRightBrace();
-            }
-            for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
-                indentWriter.println();
+            indentWriter.print("public int getSymbol(int position)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int event = events[position];");
+            indentWriter.println("return event >= 0 ? LEFT_SIDES[event] : NON_TERMINALS_COUNT + kinds[-event - 1];");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
 
-                String terminal = grammar.getSymbolName(i);
-                indentWriter.printf("public static %sToken extract%s(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", terminal, terminal, grammarName, grammarName);
-                indentWriter.printlnLeftBrace();
+            indentWriter.print("public int getSubtreeStart(int position)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int missing = 1;");
+            indentWriter.print("while (true)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int event = events[position];");
+            indentWriter.println("missing += event >= 0 ? RIGHT_SIDE_LENGTHS[event] - 1 : -1;");
+            indentWriter.print("if (missing == 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return position;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("position--;");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public %sParseTree getParseTree()", symbolName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return (%sParseTree) getParseTree(getRoot());", symbolName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public Abstract%sParseTree getParseTree(int position)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (events[position] < 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return new Terminal%sParseTree(getToken(position));", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("Object[] values = new Object[%d];", INITIAL_STACK_SIZE);
+            indentWriter.println();
+            indentWriter.println("int top = -1;");
+            indentWriter.print("for (int i = getSubtreeStart(position); i <= position; i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (top + 1 == values.length)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("values = Arrays.copyOf(values, 2 * values.length);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("int event = events[i];");
+            indentWriter.print("if (event < 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("values[++top] = getToken(i);");
+            indentWriter.println("continue;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("Abstract%sParseTree parseTree;", grammarName);
+            indentWriter.println();
+            indentWriter.print("switch (event)");
+            indentWriter.printlnLeftBrace();
+            for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+                for (Production production : grammar.getProductions(i)) {
+                    if (production.equals(getStartProduction())) {
+                        continue;
+                    }
+                    indentWriter.printf("case %d:", production.getId());
+                    indentWriter.printlnLeftBrace();
+                    printTableDrivenReduction(indentWriter, new Item(grammar, i, production, production.getRightSide().size()));
+                    indentWriter.println("break;");
+                    indentWriter.printlnRightBrace();
+                }
+            }
+            indentWriter.println("default:");
+            indentWriter.println("throw new IllegalStateException(\"Illegal production number: \" + event);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("values[++top] = parseTree;");
+            indentWriter.printlnRightBrace();
+            indentWriter.printf("return (Abstract%sParseTree) values[top];", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("private static %s createToken(int kind)", tokenType);
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("switch (kind)");
+            indentWriter.printlnLeftBrace();
+            for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
+                if (grammar.getSymbolAttributes().get(i).isEmpty()) {
+                    indentWriter.printf("case %d:", i - grammar.getNonTerminalsCount());
+                    indentWriter.println();
+                    indentWriter.printf("%sreturn %sToken.getInstance();", indentWriter.getTab(), grammar.getSymbolName(i));
+                    indentWriter.println();
+                }
+            }
+            indentWriter.println("default:");
+            indentWriter.printf("%sthrow new IllegalArgumentException(\"Illegal token kind: \" + kind);", indentWriter.getTab());
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+    }
+
+    private void generateStatesSourceFiles() throws IOException {
+        String grammarName = grammar.getGrammarName();
+        String grammarPackage = grammar.getGrammarPackage();
+        String subPackage = "states";
+        String suffix = "State";
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "Pair")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.printf("import %s.trees.Abstract%sParseTree;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public class %sPair", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            indentWriter.printf("private final %sState state;", grammarName);
+            indentWriter.println();
+            indentWriter.printf("private final Abstract%sParseTree parseTree;", grammarName);
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public %sPair(%sState state, Abstract%sParseTree parseTree)", grammarName, grammarName, grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("this.state = state;");
+            indentWriter.println("this.parseTree = parseTree;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public %sState getState()", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return state;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public Abstract%sParseTree getParseTree()", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return parseTree;");
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, suffix)) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.util.Deque;");
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.printf("import %s.analyzers.I%sLexicalAnalyzer;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.printf("import %s.parser.%sParser;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.printf("import %s.parser.%sParseTables;", grammarPackage, grammarName);
+            indentWriter.println();
+            if (generateParseListener) {
+                indentWriter.printf("import %s.parser.%sParseListener;", grammarPackage, grammarName);
+                indentWriter.println();
+            }
+            indentWriter.printf("import %s.trees.Terminal%sParseTree;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.printf("import %s.tokens.Abstract%sToken;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public final class %sState", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            indentWriter.printf("private static final %sState[] STATES = new %sState[%d];", grammarName, grammarName, automaton.getStates().size());
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.print("static");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("for (int i = 0; i < STATES.length; i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("STATES[i] = new %sState(i);", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("private final int number;");
+            indentWriter.println();
+
+            indentWriter.printf("private %sState(int number)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("this.number = number;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public static int getStatesCount()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return STATES.length;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public static %sState getState(int number)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return STATES[number];");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int getNumber()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return number;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int next(int symbol)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return %sParseTables.getGoto(number, symbol);", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            String listenerParameter = generateParseListener ? String.format(", %sParseListener listener", grammarName) : "";
+            indentWriter.printf("public boolean accept(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer%s) throws ParseException", grammarName, grammarName, listenerParameter);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("int action = %sParseTables.getAction(number, lexicalAnalyzer.getCurrentKind());", grammarName);
+            indentWriter.println();
+            indentWriter.print("if (action > 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("stack.add(new %sPair(STATES[action - 1], new Terminal%sParseTree(lexicalAnalyzer.getCurrentToken())));", grammarName, grammarName);
+            indentWriter.println();
+            if (generateParseListener) {
+                printListenerCall(indentWriter, "onShift(lexicalAnalyzer.getCurrentKind(), action - 1, stack.size())");
+            }
+            indentWriter.println("lexicalAnalyzer.nextToken();");
+            indentWriter.println("return false;");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("else if (action < 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return %sParser.reduce(-action - 1, stack, lexicalAnalyzer%s);", grammarName, generateParseListener ? ", listener" : "");
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.print("else if (lexicalAnalyzer.isEmpty())");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("throw new ParseException(\"Unexpected EOF\", lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("else");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("throw new ParseException(\"Unexpected token: \" + lexicalAnalyzer.getCurrentToken(), lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+    }
+
+    private void generateParseTablesSourceFile() throws IOException {
+        String grammarName = grammar.getGrammarName();
+        String subPackage = "parser";
+        UnitReductions unitReductions = bypassUnitReductions && !buildParseTrees ? new UnitReductions(grammar, new ValueStacks(grammar)) : null;
+        ParseTables parseTables = new ParseTables(grammar, automaton, unitReductions);
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseTables")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.printf("public class %sParseTables", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            ParseTables.CompressedTable actions = parseTables.getActions();
+            ParseTables.CompressedTable gotos = parseTables.getGotos();
+            printPackedArray(indentWriter, "ACTION_ROW", actions.getRowIndices());
+            printPackedArray(indentWriter, "ACTION_BASE", actions.getBase());
+            printPackedArray(indentWriter, "ACTION_CHECK", actions.getCheck());
+            printPackedArray(indentWriter, "ACTION_VALUE", actions.getValue());
+            printPackedArray(indentWriter, "GOTO_ROW", gotos.getRowIndices());
+            printPackedArray(indentWriter, "GOTO_BASE", gotos.getBase());
+            printPackedArray(indentWriter, "GOTO_CHECK", gotos.getCheck());
+            printPackedArray(indentWriter, "GOTO_VALUE", gotos.getValue());
+            indentWriter.println();
+
+            indentWriter.print("public static int getAction(int state, int kind)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int row = ACTION_ROW[state];");
+            indentWriter.println("int index = ACTION_BASE[row] + kind;");
+            indentWriter.printf("return ACTION_CHECK[index] == row ? ACTION_VALUE[index] : %d;", actions.getDefaultValue());
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public static int getGoto(int state, int symbol)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int row = GOTO_ROW[state];");
+            indentWriter.println("int index = GOTO_BASE[row] + symbol;");
+            indentWriter.printf("return GOTO_CHECK[index] == row ? GOTO_VALUE[index] : %d;", gotos.getDefaultValue());
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+
+            printUnpackMethods(indentWriter, actions.getRowIndices(), actions.getBase(), actions.getCheck(), actions.getValue(),
+                    gotos.getRowIndices(), gotos.getBase(), gotos.getCheck(), gotos.getValue());
+
+            indentWriter.printlnRightBrace();
+        }
+
+        System.out.printf("%s action table: %s%s", grammarName, parseTables.getActions(), System.lineSeparator());
+        System.out.printf("%s goto table: %s%s", grammarName, parseTables.getGotos(), System.lineSeparator());
+        if (unitReductions != null) {
+            System.out.printf("%s unit reductions: %d of %d productions bypassed, %d shifts skipping up to %d reductions per token, %d gotos skipping up to %d reductions%s",
+                    grammarName, unitReductions.getBypassedCount(), unitReductions.getProductionsCount(),
+                    parseTables.getRedirectedShiftsCount(), parseTables.getMaxSkippedPerShiftCount(),
+                    parseTables.getRedirectedGotosCount(), parseTables.getMaxSkippedPerGotoCount(), System.lineSeparator());
+        }
+    }
+
+    /**
+     * Arrays are packed into string constants, so large tables neither bloat nor overflow the static initializer.
+     */
+    private static void printPackedArray(IndentWriter indentWriter, String name, int[] array) throws IOException {
+        String type = ParseTables.getElementType(array);
+        indentWriter.printf("private static final %s[] %s = unpack%s(%d", type, name, getUnpackSuffix(type), array.length);
+
+        StringBuilder chunk = new StringBuilder();
+        for (int value : array) {
+            if (type.equals("int")) {
+                appendPackedCharacter(chunk, value >>> 16);
+            }
+            appendPackedCharacter(chunk, value & (type.equals("byte") ? 0xFF : 0xFFFF));
+
+            if (chunk.length() >= PACKED_CHUNK_LENGTH) {
+                indentWriter.printfWithoutIndent(", \"%s\"", chunk);
+                chunk.setLength(0);
+            }
+        }
+        if (chunk.length() > 0 || array.length == 0) {
+            indentWriter.printfWithoutIndent(", \"%s\"", chunk);
+        }
+        indentWriter.printWithoutIndent(");");
+        indentWriter.println();
+    }
+
+    private static void appendPackedCharacter(StringBuilder stringBuilder, int character) {
+        // unicode escapes are translated before lexing, so ASCII characters are written in octal
+        stringBuilder.append(character < 0x80 ? String.format("\\%o", character) : String.format("\\u%04x", character));
+    }
+
+    private static String getUnpackSuffix(String type) {
+        return Character.toUpperCase(type.charAt(0)) + type.substring(1) + "s";
+    }
+
+    private static void printUnpackMethods(IndentWriter indentWriter, int[]... arrays) throws IOException {
+        TreeSet<String> types = new TreeSet<>();
+        for (int[] array : arrays) {
+            types.add(ParseTables.getElementType(array));
+        }
+        for (String type : types) {
+            indentWriter.println();
+            printUnpackMethod(indentWriter, type);
+        }
+    }
+
+    private static void printUnpackMethod(IndentWriter indentWriter, String type) throws IOException {
+        indentWriter.printf("private static %s[] unpack%s(int length, String... chunks)", type, getUnpackSuffix(type));
+        indentWriter.printlnLeftBrace();
+        indentWriter.printf("%s[] result = new %s[length];", type, type);
+        indentWriter.println();
+        indentWriter.println("int index = 0;");
+        indentWriter.print("for (String chunk : chunks)");
+        indentWriter.printlnLeftBrace();
+        if (type.equals("int")) {
+            indentWriter.print("for (int i = 0; i < chunk.length(); i += 2)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("result[index++] = chunk.charAt(i) << 16 | chunk.charAt(i + 1);");
+        } else {
+            indentWriter.print("for (int i = 0; i < chunk.length(); i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("result[index++] = (%s) chunk.charAt(i);", type);
+            indentWriter.println();
+        }
+        indentWriter.printlnRightBrace();
+        indentWriter.printlnRightBrace();
+        indentWriter.println("return result;");
+        indentWriter.printlnRightBrace();
+    }
+
+    private void generateParserSourceFile() throws IOException {
+        String grammarName = grammar.getGrammarName();
+        String grammarPackage = grammar.getGrammarPackage();
+        String subPackage = "parser";
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "Parser")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.util.Deque;");
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.printf("import %s.analyzers.I%sLexicalAnalyzer;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.printf("import %s.states.*;", grammarPackage);
+            indentWriter.println();
+            indentWriter.printf("import %s.trees.*;", grammarPackage);
+            indentWriter.println();
+            indentWriter.printf("import %s.tokens.*;", grammarPackage);
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public class %sParser", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            String symbolName = grammar.getSymbolName(getStartProduction().getRightSide().get(0));
+
+            printParseWithNewContext(indentWriter, symbolName);
+
+            indentWriter.printf("public static %sParseTree parse%s(I%sLexicalAnalyzer lexicalAnalyzer, %sParserContext context) throws ParseException", symbolName, symbolName, grammarName, grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("Deque<%sPair> stack = context.stack;", grammarName);
+            indentWriter.println();
+            indentWriter.println("stack.clear();");
+            if (generateParseListener) {
+                indentWriter.printf("%sParseListener listener = context.getParseListener();", grammarName);
+                indentWriter.println();
+                indentWriter.print("try");
+                indentWriter.printlnLeftBrace();
+            }
+            indentWriter.print("while (true)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("if (getState(stack).accept(stack, lexicalAnalyzer%s))", generateParseListener ? ", listener" : "");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return extract%s(stack, lexicalAnalyzer);", symbolName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            if (generateParseListener) {
+                printListenerErrorHandler(indentWriter);
+            }
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public static %sState getState(Deque<%sPair> stack)", grammarName, grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("return !stack.isEmpty() ? stack.getLast().getState() : %sState.getState(0);", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            String listenerParameter = generateParseListener ? String.format(", %sParseListener listener", grammarName) : "";
+            indentWriter.printf("public static boolean reduce(int production, Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer%s) throws ParseException", grammarName, grammarName, listenerParameter);
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("switch (production)");
+            indentWriter.printlnLeftBrace();
+            for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+                for (Production production : grammar.getProductions(i)) {
+                    indentWriter.printf("case %d:", production.getId());
+                    indentWriter.printlnLeftBrace();
+                    if (production.equals(getStartProduction())) {
+                        if (generateParseListener) {
+                            printListenerCall(indentWriter, "onAccept()");
+                        }
+                        indentWriter.println("return true;");
+                    } else {
+                        printReduction(indentWriter, new Item(grammar, i, production, production.getRightSide().size()));
+                        indentWriter.println("return false;");
+                    }
+                    indentWriter.printlnRightBrace();
+                }
+            }
+            indentWriter.println("default:");
+            indentWriter.println("throw new ParseException(\"Illegal production number: \" + production, lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public static %sState getState(int state, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", grammarName, grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("if (state < 0 || state >= %sState.getStatesCount())", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("throw new ParseException(\"Illegal state number: \" + state, lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.printf("return %sState.getState(state);", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+
+            for (int i = 0; i < grammar.getNonTerminalsCount() - 1; i++) {
+                indentWriter.println();
+
+                String nonTerminal = grammar.getSymbolName(i);
+                indentWriter.printf("public static %sParseTree extract%s(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", nonTerminal, nonTerminal, grammarName, grammarName);
+                indentWriter.printlnLeftBrace();
                 indentWriter.printf("Abstract%sParseTree parseTree = stack.pollLast().getParseTree();", grammarName);
                 indentWriter.println();
-                indentWriter.printf("if (parseTree instanceof Terminal%sParseTree)", grammarName);
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("Abstract%sToken token = ((Terminal%sParseTree) parseTree).getToken();", grammarName, grammarName);
+                indentWriter.printf("if (parseTree instanceof %sParseTree)", nonTerminal);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("return (%sParseTree) parseTree;", nonTerminal);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.print("else");
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("throw new ParseException(\"Expected non-terminal '%s'\", lexicalAnalyzer.getErrorOffset());", nonTerminal);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.printlnRightBrace();
+            }
+            for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
+                indentWriter.println();
+
+                String terminal = grammar.getSymbolName(i);
+                indentWriter.printf("public static %sToken extract%s(Deque<%sPair> stack, I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", terminal, terminal, grammarName, grammarName);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("Abstract%sParseTree parseTree = stack.pollLast().getParseTree();", grammarName);
+                indentWriter.println();
+                indentWriter.printf("if (parseTree instanceof Terminal%sParseTree)", grammarName);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("Abstract%sToken token = ((Terminal%sParseTree) parseTree).getToken();", grammarName, grammarName);
+                indentWriter.println();
+                indentWriter.printf("if (token instanceof %sToken)", terminal);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("return (%sToken) token;", terminal);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.print("else");
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("throw new ParseException(\"Token '%s' expected\", lexicalAnalyzer.getErrorOffset());", terminal);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.printlnRightBrace();
+                indentWriter.print("else");
+                indentWriter.printlnLeftBrace();
+                indentWriter.println("throw new ParseException(\"Non-terminal expected\", lexicalAnalyzer.getErrorOffset());");
+                indentWriter.printlnRightBrace();
+                indentWriter.printlnRightBrace();
+            }
+
+            indentWriter.printlnRightBrace();
+        }
+    }
+
+    private void generateTableDrivenParserSourceFile() throws IOException {
+        String grammarName = grammar.getGrammarName();
+        String grammarPackage = grammar.getGrammarPackage();
+        String subPackage = "parser";
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "Parser")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.util.Arrays;");
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.printf("import %s.analyzers.I%sLexicalAnalyzer;", grammarPackage, grammarName);
+            indentWriter.println();
+            indentWriter.printf("import %s.trees.*;", grammarPackage);
+            indentWriter.println();
+            indentWriter.printf("import %s.tokens.*;", grammarPackage);
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public class %sParser", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            String symbolName = grammar.getSymbolName(getStartProduction().getRightSide().get(0));
+
+            ValueStacks valueStacks = new ValueStacks(grammar);
+            Map<String, String> stackTypes = getStackTypes();
+
+            printParseWithNewContext(indentWriter, symbolName);
+
+            indentWriter.printf("public static %s parse%s(I%sLexicalAnalyzer lexicalAnalyzer, %sParserContext context) throws ParseException", getParseResultType(symbolName), symbolName, grammarName, grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int[] states = context.states;");
+            for (Map.Entry<String, String> entry : stackTypes.entrySet()) {
+                indentWriter.printf("%s[] %s = context.%s;", entry.getValue(), entry.getKey(), entry.getKey());
+                indentWriter.println();
+            }
+            if (isArena()) {
+                indentWriter.printf("%sParseTreeArena arena = context.getArena();", grammarName);
+                indentWriter.println();
+            }
+            if (isEventLog()) {
+                indentWriter.printf("%sParseEventLog eventLog = context.getEventLog();", grammarName);
+                indentWriter.println();
+                indentWriter.println("eventLog.clear();");
+            }
+            indentWriter.println("int top = 0;");
+            indentWriter.println("states[top] = 0;");
+            if (generateParseListener) {
+                indentWriter.printf("%sParseListener listener = context.getParseListener();", grammarName);
+                indentWriter.println();
+            }
+            indentWriter.println();
+
+            if (generateParseListener) {
+                indentWriter.print("try");
+                indentWriter.printlnLeftBrace();
+            }
+            indentWriter.print("while (true)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (top + 1 == states.length)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("states = Arrays.copyOf(states, 2 * states.length);");
+            indentWriter.println("context.states = states;");
+            for (String stack : stackTypes.keySet()) {
+                indentWriter.printf("%s = Arrays.copyOf(%s, 2 * %s.length);", stack, stack, stack);
+                indentWriter.println();
+                indentWriter.printf("context.%s = %s;", stack, stack);
+                indentWriter.println();
+            }
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("int action = %sParseTables.getAction(states[top], lexicalAnalyzer.getCurrentKind());", grammarName);
+            indentWriter.println();
+            indentWriter.print("if (action > 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("top++;");
+            indentWriter.println("states[top] = action - 1;");
+            if (isArena()) {
+                indentWriter.printf("nodes[top] = arena.addToken(%d + lexicalAnalyzer.getCurrentKind(), lexicalAnalyzer.getCurrentPosition(), lexicalAnalyzer.getCurrentEnd());", grammar.getNonTerminalsCount());
+                indentWriter.println();
+                printTokenAttributesPush(indentWriter, valueStacks, "nodes[top]");
+            } else if (isEventLog()) {
+                printEventLogShift(indentWriter);
+            } else if (buildParseTrees) {
+                indentWriter.println("values[top] = lexicalAnalyzer.getCurrentToken();");
+            } else {
+                printTokenAttributesPush(indentWriter, valueStacks, "top");
+            }
+            if (generateParseListener) {
+                printListenerCall(indentWriter, "onShift(lexicalAnalyzer.getCurrentKind(), action - 1, top)");
+            }
+            indentWriter.println("lexicalAnalyzer.nextToken();");
+            indentWriter.println("continue;");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("else if (action == 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (lexicalAnalyzer.isEmpty())");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("throw new ParseException(\"Unexpected EOF\", lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("throw new ParseException(\"Unexpected token: \" + lexicalAnalyzer.getCurrentToken(), lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            if (buildParseTrees && !isArena() && !isEventLog()) {
+                indentWriter.printf("Abstract%sParseTree parseTree;", grammarName);
+                indentWriter.println();
+            }
+            indentWriter.println("int leftSide;");
+            indentWriter.print("switch (-action - 1)");
+            indentWriter.printlnLeftBrace();
+            for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+                for (Production production : grammar.getProductions(i)) {
+                    indentWriter.printf("case %d:", production.getId());
+                    indentWriter.printlnLeftBrace();
+                    if (production.equals(getStartProduction()) && generateParseListener) {
+                        printListenerCall(indentWriter, "onAccept()");
+                    }
+                    if (production.equals(getStartProduction()) && isArena()) {
+                        indentWriter.println("return arena.getCursor(nodes[top]);");
+                    } else if (production.equals(getStartProduction()) && isEventLog()) {
+                        indentWriter.println("return eventLog;");
+                    } else if (production.equals(getStartProduction()) && buildParseTrees) {
+                        indentWriter.printf("return (%sParseTree) values[top];", symbolName);
+                        indentWriter.println();
+                    } else if (production.equals(getStartProduction())) {
+                        printStartSymbolCreation(indentWriter, valueStacks);
+                    } else if (isEventLog()) {
+                        printEventLogReduction(indentWriter, new Item(grammar, i, production, production.getRightSide().size()));
+                        indentWriter.println("break;");
+                    } else if (isArena()) {
+                        printArenaReduction(indentWriter, valueStacks, new Item(grammar, i, production, production.getRightSide().size()));
+                        indentWriter.println("break;");
+                    } else if (buildParseTrees) {
+                        printTableDrivenReduction(indentWriter, new Item(grammar, i, production, production.getRightSide().size()));
+                        indentWriter.printf("leftSide = %d;", i);
+                        indentWriter.println();
+                        indentWriter.println("break;");
+                    } else {
+                        printAttributesEvaluation(indentWriter, valueStacks, new Item(grammar, i, production, production.getRightSide().size()));
+                        indentWriter.println("break;");
+                    }
+                    indentWriter.printlnRightBrace();
+                }
+            }
+            indentWriter.println("default:");
+            indentWriter.println("throw new ParseException(\"Illegal production number: \" + (-action - 1), lexicalAnalyzer.getErrorOffset());");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("int state = %sParseTables.getGoto(states[top], leftSide);", grammarName);
+            indentWriter.println();
+            indentWriter.println("top++;");
+            indentWriter.println("states[top] = state;");
+            if (buildParseTrees && !isArena() && !isEventLog()) {
+                indentWriter.println("values[top] = parseTree;");
+            }
+            if (generateParseListener) {
+                printListenerCall(indentWriter, "onReduce(-action - 1, state, top)");
+            }
+            indentWriter.printlnRightBrace();
+            if (generateParseListener) {
+                printListenerErrorHandler(indentWriter);
+            }
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+    }
+
+    private static void printListenerErrorHandler(IndentWriter indentWriter) throws IOException {
+        indentWriter.printlnRightBrace();
+        indentWriter.print("catch (ParseException e)");
+        indentWriter.printlnLeftBrace();
+        printListenerCall(indentWriter, "onError(e)");
+        indentWriter.println("throw e;");
+        indentWriter.printlnRightBrace();
+    }
+
+    private void printParseWithNewContext(IndentWriter indentWriter, String symbolName) throws IOException {
+        String grammarName = grammar.getGrammarName();
+        indentWriter.printf("public static %s parse%s(I%sLexicalAnalyzer lexicalAnalyzer) throws ParseException", getParseResultType(symbolName), symbolName, grammarName);
+        indentWriter.printlnLeftBrace();
+        indentWriter.printf("return parse%s(lexicalAnalyzer, new %sParserContext());", symbolName, grammarName);
+        indentWriter.println();
+        indentWriter.printlnRightBrace();
+        indentWriter.println();
+    }
+
+    private Map<String, String> getStackTypes() {
+        if (isArena()) {
+            return Collections.singletonMap("nodes", "int");
+        }
+        if (isEventLog()) {
+            return Collections.emptyMap();
+        }
+        return buildParseTrees
+                ? Collections.singletonMap("values", "Object")
+                : new ValueStacks(grammar).getElementTypes();
+    }
+
+    private boolean isTableDriven() {
+        return backend == Backend.TABLE_DRIVEN || !buildParseTrees || isArena() || isEventLog();
+    }
+
+    private boolean isArena() {
+        return buildParseTrees && buildArenaParseTrees;
+    }
+
+    private boolean isEventLog() {
+        return buildParseTrees && recordParseEvents && !buildArenaParseTrees;
+    }
+
+    private String getParseResultType(String symbolName) {
+        if (isArena()) {
+            return grammar.getGrammarName() + "ParseTreeCursor";
+        }
+        return isEventLog() ? grammar.getGrammarName() + "ParseEventLog" : symbolName + "ParseTree";
+    }
+
+    private void generateParserContextSourceFiles() throws IOException {
+        String grammarName = grammar.getGrammarName();
+        String grammarPackage = grammar.getGrammarPackage();
+        String subPackage = "parser";
+        String symbolName = grammar.getSymbolName(getStartProduction().getRightSide().get(0));
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParserContext")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.io.InputStream;");
+            indentWriter.println("import java.nio.ByteBuffer;");
+            indentWriter.println("import java.text.ParseException;");
+            if (!isTableDriven()) {
+                indentWriter.println("import java.util.ArrayDeque;");
+                indentWriter.println("import java.util.Deque;");
+            }
+            indentWriter.printf("import %s.analyzers.%sLexicalAnalyzer;", grammarPackage, grammarName);
+            indentWriter.println();
+            if (!isTableDriven()) {
+                indentWriter.printf("import %s.states.%sPair;", grammarPackage, grammarName);
+                indentWriter.println();
+            }
+            if (isArena()) {
+                indentWriter.printf("import %s.trees.%sParseTreeArena;", grammarPackage, grammarName);
+                indentWriter.println();
+            }
+            indentWriter.printf("import %s.trees.%s;", grammarPackage, getParseResultType(symbolName));
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public class %sParserContext", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            if (isTableDriven()) {
+                indentWriter.printf("int[] states = new int[%d];", INITIAL_STACK_SIZE);
+                indentWriter.println();
+                for (Map.Entry<String, String> entry : getStackTypes().entrySet()) {
+                    indentWriter.printf("%s[] %s = new %s[%d];", entry.getValue(), entry.getKey(), entry.getValue(), INITIAL_STACK_SIZE);
+                    indentWriter.println();
+                }
+            } else {
+                indentWriter.printf("final Deque<%sPair> stack = new ArrayDeque<>();", grammarName);
+                indentWriter.println();
+            }
+            indentWriter.printf("private %sLexicalAnalyzer lexicalAnalyzer;", grammarName);
+            indentWriter.println();
+            Map<String, String> properties = new LinkedHashMap<>();
+            Map<String, String> initialValues = new HashMap<>();
+            if (isArena()) {
+                properties.put("arena", grammarName + "ParseTreeArena");
+                initialValues.put("arena", String.format("new %sParseTreeArena()", grammarName));
+            }
+            if (isEventLog()) {
+                properties.put("eventLog", grammarName + "ParseEventLog");
+                initialValues.put("eventLog", String.format("new %sParseEventLog()", grammarName));
+            }
+            if (generateParseListener) {
+                properties.put("parseListener", grammarName + "ParseListener");
+            }
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                String initialValue = initialValues.get(entry.getKey());
+                indentWriter.printf("private %s %s%s;", entry.getValue(), entry.getKey(), initialValue != null ? " = " + initialValue : "");
+                indentWriter.println();
+            }
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                String name = entry.getKey();
+                String capitalizedName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                indentWriter.println();
+                indentWriter.printf("public %s get%s()", entry.getValue(), capitalizedName);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("return %s;", name);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.println();
+
+                indentWriter.printf("public void set%s(%s %s)", capitalizedName, entry.getValue(), name);
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("this.%s = %s;", name, name);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+            }
+
+            for (String inputType : new String[]{"InputStream", "ByteBuffer"}) {
+                indentWriter.println();
+                indentWriter.printf("public %s parse(%s input) throws ParseException", getParseResultType(symbolName), inputType);
+                indentWriter.printlnLeftBrace();
+                indentWriter.print("if (lexicalAnalyzer == null)");
+                indentWriter.printlnLeftBrace();
+                indentWriter.printf("lexicalAnalyzer = new %sLexicalAnalyzer(input);", grammarName);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+                indentWriter.print("else");
+                indentWriter.printlnLeftBrace();
+                indentWriter.println("lexicalAnalyzer.reset(input);");
+                indentWriter.printlnRightBrace();
+                indentWriter.printf("return %sParser.parse%s(lexicalAnalyzer, this);", grammarName, symbolName);
+                indentWriter.println();
+                indentWriter.printlnRightBrace();
+            }
+
+            indentWriter.printlnRightBrace();
+        }
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseResult")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.printf("import %s.trees.%s;", grammarPackage, getParseResultType(symbolName));
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public class %sParseResult", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            indentWriter.println("private final int offset;");
+            indentWriter.printf("private final %s parseTree;", getParseResultType(symbolName));
+            indentWriter.println();
+            indentWriter.println("private final ParseException exception;");
+            indentWriter.println();
+
+            indentWriter.printf("public %sParseResult(int offset, %s parseTree)", grammarName, getParseResultType(symbolName));
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("this.offset = offset;");
+            indentWriter.println("this.parseTree = parseTree;");
+            indentWriter.println("exception = null;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public %sParseResult(int offset, ParseException exception)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("this.offset = offset;");
+            indentWriter.println("parseTree = null;");
+            indentWriter.println("this.exception = exception;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int getOffset()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return offset;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public boolean isSuccessful()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return exception == null;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public %s getParseTree()", getParseResultType(symbolName));
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return parseTree;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public ParseException getException()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return exception;");
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "BatchParser")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.io.Closeable;");
+            indentWriter.println("import java.nio.ByteBuffer;");
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.println("import java.util.ArrayList;");
+            indentWriter.println("import java.util.List;");
+            indentWriter.println("import java.util.concurrent.ExecutionException;");
+            indentWriter.println("import java.util.concurrent.ExecutorService;");
+            indentWriter.println("import java.util.concurrent.Executors;");
+            indentWriter.println("import java.util.concurrent.Future;");
+            if (isArena()) {
+                indentWriter.printf("import %s.trees.%sParseTreeArena;", grammarPackage, grammarName);
+                indentWriter.println();
+            }
+            if (isEventLog()) {
+                indentWriter.printf("import %s.trees.%sParseEventLog;", grammarPackage, grammarName);
+                indentWriter.println();
+            }
+            indentWriter.println();
+
+            indentWriter.printf("public class %sBatchParser implements Closeable", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            indentWriter.println("private static final int CHUNKS_PER_THREAD = 4;");
+            indentWriter.println();
+            indentWriter.println("private final int threadsCount;");
+            indentWriter.println("private final ExecutorService executorService;");
+            indentWriter.printf("private final ThreadLocal<%sParserContext> contexts = ThreadLocal.withInitial(%sParserContext::new);", grammarName, grammarName);
+            indentWriter.println();
+            indentWriter.println();
+
+            indentWriter.printf("public %sBatchParser(int threadsCount)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("this.threadsCount = threadsCount;");
+            indentWriter.println("executorService = Executors.newFixedThreadPool(threadsCount);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public List<%sParseResult> parse(byte[] input, byte delimiter) throws InterruptedException", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return parse(ByteBuffer.wrap(input), delimiter);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("public List<%sParseResult> parse(ByteBuffer input, byte delimiter) throws InterruptedException", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int start = input.position();");
+            indentWriter.println("int end = input.limit();");
+            indentWriter.println("int chunksCount = threadsCount * CHUNKS_PER_THREAD;");
+            indentWriter.printf("List<Future<List<%sParseResult>>> futures = new ArrayList<>(chunksCount);", grammarName);
+            indentWriter.println();
+            indentWriter.println("int chunkStart = start;");
+            indentWriter.print("for (int i = 1; i <= chunksCount && chunkStart < end; i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int chunkEnd = getRecordEnd(input, Math.max(chunkStart, start + (int) ((long) (end - start) * i / chunksCount)), end, delimiter);");
+            indentWriter.println("ByteBuffer chunk = input.duplicate();");
+            indentWriter.println("int from = chunkStart;");
+            indentWriter.println("futures.add(executorService.submit(() -> parseRecords(chunk, from, chunkEnd, delimiter)));");
+            indentWriter.println("chunkStart = chunkEnd;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("List<%sParseResult> results = new ArrayList<>();", grammarName);
+            indentWriter.println();
+            indentWriter.printf("for (Future<List<%sParseResult>> future : futures)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("try");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("results.addAll(future.get());");
+            indentWriter.printlnRightBrace();
+            indentWriter.print("catch (ExecutionException e)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (e.getCause() instanceof RuntimeException)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("throw (RuntimeException) e.getCause();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("throw new IllegalStateException(e.getCause());");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println("return results;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.printf("private List<%sParseResult> parseRecords(ByteBuffer input, int start, int end, byte delimiter)", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("%sParserContext context = contexts.get();", grammarName);
+            indentWriter.println();
+            if (isArena()) {
+                indentWriter.printf("context.setArena(new %sParseTreeArena());", grammarName);
+                indentWriter.println();
+            }
+            indentWriter.printf("List<%sParseResult> results = new ArrayList<>();", grammarName);
+            indentWriter.println();
+            indentWriter.print("while (start < end)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("int recordEnd = getRecordEnd(input, start, end, delimiter);");
+            indentWriter.println("input.limit(input.get(recordEnd - 1) == delimiter ? recordEnd - 1 : recordEnd);");
+            indentWriter.println("input.position(start);");
+            if (isEventLog()) {
+                indentWriter.printf("context.setEventLog(new %sParseEventLog());", grammarName);
                 indentWriter.println();
-                indentWriter.printf("if (token instanceof %sToken)", terminal);
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("return (%sToken) token;", terminal);
+            }
+            indentWriter.print("try");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("results.add(new %sParseResult(start, context.parse(input)));", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.print("catch (ParseException e)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("results.add(new %sParseResult(start, e));", grammarName);
+            indentWriter.println();
+            indentWriter.printlnRightBrace();
+            indentWriter.println("input.limit(end);");
+            indentWriter.println("start = recordEnd;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("return results;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private static int getRecordEnd(ByteBuffer input, int position, int end, byte delimiter)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("while (position < end)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (input.get(position++) == delimiter)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("break;");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println("return position;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public void close()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("executorService.shutdown();");
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+    }
+
+    private void generateParseListenerSourceFiles() throws IOException {
+        String grammarName = grammar.getGrammarName();
+        String subPackage = "parser";
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseListener")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.println();
+
+            indentWriter.printf("public interface %sParseListener", grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            indentWriter.println("void onShift(int kind, int state, int depth);");
+            indentWriter.println();
+            indentWriter.println("void onReduce(int production, int state, int depth);");
+            indentWriter.println();
+            indentWriter.println("void onAccept();");
+            indentWriter.println();
+            indentWriter.println("void onError(ParseException exception);");
+
+            indentWriter.printlnRightBrace();
+        }
+
+        int productionsCount = getProductionsCount();
+
+        try (IndentWriter indentWriter = getIndentWriter(subPackage, grammarName, "ParseStatistics")) {
+            printPackage(indentWriter, subPackage);
+
+            indentWriter.println("import java.text.ParseException;");
+            indentWriter.println();
+
+            indentWriter.printf("public class %sParseStatistics implements %sParseListener", grammarName, grammarName);
+            indentWriter.printlnLeftBrace();
+            indentWriter.println();
+
+            indentWriter.println("private long shifts;");
+            indentWriter.printf("private final long[] reductions = new long[%d];", productionsCount);
+            indentWriter.println();
+            indentWriter.printf("private final long[] stateVisits = new long[%d];", automaton.getStates().size());
+            indentWriter.println();
+            indentWriter.println("private int maxDepth;");
+            indentWriter.println("private long accepted;");
+            indentWriter.println("private long errors;");
+            indentWriter.println("private long parseNanos;");
+            indentWriter.println("private long startTime = -1;");
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public void onShift(int kind, int state, int depth)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (startTime < 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("startTime = System.nanoTime();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("shifts++;");
+            indentWriter.println("stateVisits[state]++;");
+            indentWriter.println("maxDepth = Math.max(maxDepth, depth);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public void onReduce(int production, int state, int depth)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("reductions[production]++;");
+            indentWriter.println("stateVisits[state]++;");
+            indentWriter.println("maxDepth = Math.max(maxDepth, depth);");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public void onAccept()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("accepted++;");
+            indentWriter.println("stop();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public void onError(ParseException exception)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("errors++;");
+            indentWriter.println("stop();");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("private void stop()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (startTime >= 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("parseNanos += System.nanoTime() - startTime;");
+            indentWriter.println("startTime = -1;");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getShifts()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return shifts;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getReductions(int production)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return reductions[production];");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getReductions()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("long result = 0;");
+            indentWriter.print("for (long count : reductions)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("result += count;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println("return result;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getStateVisits(int state)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return stateVisits[state];");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public int getMaxDepth()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return maxDepth;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getAccepted()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return accepted;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public long getErrors()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return errors;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.print("public double getTokensPerSecond()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("return parseNanos > 0 ? shifts * 1e9 / parseNanos : 0;");
+            indentWriter.printlnRightBrace();
+            indentWriter.println();
+
+            indentWriter.println("@Override");
+            indentWriter.print("public String toString()");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("StringBuilder result = new StringBuilder(String.format(\"accepted: %d, errors: %d, shifts: %d, reductions: %d, max depth: %d, tokens/s: %.1f%n\", accepted, errors, shifts, getReductions(), maxDepth, getTokensPerSecond()));");
+            indentWriter.print("for (int i = 0; i < reductions.length; i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (reductions[i] != 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("result.append(String.format(\"production %d: %d%n\", i, reductions[i]));");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.print("for (int i = 0; i < stateVisits.length; i++)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.print("if (stateVisits[i] != 0)");
+            indentWriter.printlnLeftBrace();
+            indentWriter.println("result.append(String.format(\"state %d: %d%n\", i, stateVisits[i]));");
+            indentWriter.printlnRightBrace();
+            indentWriter.printlnRightBrace();
+            indentWriter.println("return result.toString();");
+            indentWriter.printlnRightBrace();
+
+            indentWriter.printlnRightBrace();
+        }
+    }
+
+    private void printTableDrivenReduction(IndentWriter indentWriter, Item reduction) throws IOException {
+        ArrayList<Integer> rightSide = reduction.getRightSide();
+        for (int i = rightSide.size() - 1; i >= 0; i--) {
+            int symbol = rightSide.get(i);
+            String type = grammar.getSymbolName(symbol) + (grammar.isTerminal(symbol) ? "Token" : "ParseTree");
+            int offset = rightSide.size() - 1 - i;
+            indentWriter.printf("%s arg%d = (%s) values[top%s];", type, i, type, offset != 0 ? " - " + offset : "");
+            indentWriter.println();
+        }
+        if (!rightSide.isEmpty()) {
+            indentWriter.printf("top -= %d;", rightSide.size());
+            indentWriter.println();
+        }
+
+        indentWriter.print("parseTree = ");
+        printParseTreeCreation(indentWriter, reduction);
+    }
+
+    private boolean hasAttributedTerminals() {
+        for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
+            if (!grammar.getSymbolAttributes().get(i).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void printTokenAttributesPush(IndentWriter indentWriter, ValueStacks valueStacks, String position) throws IOException {
+        if (!hasAttributedTerminals()) {
+            return;
+        }
+
+        ArrayList<ArrayList<Attribute>> symbolAttributes = grammar.getSymbolAttributes();
+        indentWriter.print("switch (lexicalAnalyzer.getCurrentKind())");
+        indentWriter.printlnLeftBrace();
+        for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
+            ArrayList<Attribute> attributes = symbolAttributes.get(i);
+            if (attributes.isEmpty()) {
+                continue;
+            }
+
+            String symbolName = grammar.getSymbolName(i);
+            indentWriter.printf("case %d:", i - grammar.getNonTerminalsCount());
+            indentWriter.printlnLeftBrace();
+            indentWriter.printf("%sToken token = (%sToken) lexicalAnalyzer.getCurrentToken();", symbolName, symbolName);
+            indentWriter.println();
+            for (int j = 0; j < attributes.size(); j++) {
+                Attribute attribute = attributes.get(j);
+                if (isArena()) {
+                    indentWriter.printf("arena.%s(%s, token.%s);", getAttributeSetterName(i, attribute), position, attribute.getName());
+                } else {
+                    indentWriter.printf("%s[%s] = token.%s;", valueStacks.getStack(i, j), position, attribute.getName());
+                }
                 indentWriter.println();
-                indentWriter.printlnRightBrace();
-                indentWriter.print("else");
-                indentWriter.printlnLeftBrace();
-                indentWriter.printf("throw new ParseException(\"Token '%s' expected\", lexicalAnalyzer.getCurrentPosition());", terminal);
+            }
+            indentWriter.println("break;");
+            indentWriter.printlnRightBrace();
+        }
+        indentWriter.printlnRightBrace();
+    }
+
+    private void printAttributesEvaluation(IndentWriter indentWriter, ValueStacks valueStacks, Item reduction) throws IOException {
+        ArrayList<Integer> rightSide = reduction.getRightSide();
+        ArrayList<String> actions = reduction.getProductionActions();
+        int leftSide = reduction.getLeftSide();
+
+        printAttributeResults(indentWriter, valueStacks, reduction, "%s");
+        if (!rightSide.isEmpty()) {
+            indentWriter.printf("top -= %d;", rightSide.size());
+            indentWriter.println();
+        }
+        for (int i = 0; i < actions.size(); i++) {
+            indentWriter.printf("%s[top + 1] = result%d;", valueStacks.getStack(leftSide, i), i);
+            indentWriter.println();
+        }
+        indentWriter.printf("leftSide = %d;", leftSide);
+        indentWriter.println();
+    }
+
+    private void printArenaReduction(IndentWriter indentWriter, ValueStacks valueStacks, Item reduction) throws IOException {
+        ArrayList<Integer> rightSide = reduction.getRightSide();
+        ArrayList<String> actions = reduction.getProductionActions();
+        int leftSide = reduction.getLeftSide();
+
+        printAttributeResults(indentWriter, valueStacks, reduction, "nodes[%s]");
+        if (!rightSide.isEmpty()) {
+            indentWriter.printf("top -= %d;", rightSide.size());
+            indentWriter.println();
+        }
+        indentWriter.printf("int node = arena.addNode(%d, %d, nodes, top + 1, %d, lexicalAnalyzer.getCurrentPosition());", leftSide, reduction.getProductionId(), rightSide.size());
+        indentWriter.println();
+        indentWriter.println("nodes[top + 1] = node;");
+        ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(leftSide);
+        for (int i = 0; i < actions.size(); i++) {
+            indentWriter.printf("arena.%s(node, result%d);", getAttributeSetterName(leftSide, attributes.get(i)), i);
+            indentWriter.println();
+        }
+        indentWriter.printf("leftSide = %d;", leftSide);
+        indentWriter.println();
+    }
+
+    /**
+     * Prints the recording of the current token by its kind and span,
+     * only the tokens of the terminals with attributes are recorded as objects.
+     */
+    private void printEventLogShift(IndentWriter indentWriter) throws IOException {
+        String span = "lexicalAnalyzer.getCurrentPosition(), lexicalAnalyzer.getCurrentEnd()";
+        if (!hasAttributedTerminals()) {
+            indentWriter.printf("eventLog.addToken(lexicalAnalyzer.getCurrentKind(), %s);", span);
+            indentWriter.println();
+            return;
+        }
+
+        indentWriter.print("switch (lexicalAnalyzer.getCurrentKind())");
+        indentWriter.printlnLeftBrace();
+        for (int i = grammar.getNonTerminalsCount(); i < grammar.getSymbolsCount(); i++) {
+            if (!grammar.getSymbolAttributes().get(i).isEmpty()) {
+                indentWriter.printf("case %d:", i - grammar.getNonTerminalsCount());
                 indentWriter.println();
-                indentWriter.printlnRightBrace();
-                indentWriter.printlnRightBrace();
-                indentWriter.print("else");
-                indentWriter.printlnLeftBrace();
-                indentWriter.println("throw new ParseException(\"Non-terminal expected\", lexicalAnalyzer.getCurrentPosition());");
-                indentWriter.printlnRightBrace();
-                indentWriter.printlnRightBrace();
             }
+        }
+        indentWriter.printf("%seventLog.addToken(lexicalAnalyzer.getCurrentToken(), %s);", indentWriter.getTab(), span);
+        indentWriter.println();
+        indentWriter.printf("%sbreak;", indentWriter.getTab());
+        indentWriter.println();
+        indentWriter.println("default:");
+        indentWriter.printf("%seventLog.addToken(lexicalAnalyzer.getCurrentKind(), %s);", indentWriter.getTab(), span);
+        indentWriter.println();
+        indentWriter.printlnRightBrace();
+    }
 
-            indentWriter.printlnRightBrace();
+    private void printEventLogReduction(IndentWriter indentWriter, Item reduction) throws IOException {
+        indentWriter.printf("eventLog.addReduction(%d);", reduction.getProductionId());
+        indentWriter.println();
+        if (!reduction.getRightSide().isEmpty()) {
+            indentWriter.printf("top -= %d;", reduction.getRightSide().size());
+            indentWriter.println();
+        }
+        indentWriter.printf("leftSide = %d;", reduction.getLeftSide());
+        indentWriter.println();
+    }
+
+    /**
+     * Prints the evaluation of the attributes of the left side into the locals result0, result1, ...
+     * reading the attributes of the right side from the top of the stack.
+     *
+     * @param positionFormat the format of the index of a stack element given the stack position
+     */
+    private void printAttributeResults(IndentWriter indentWriter, ValueStacks valueStacks, Item reduction, String positionFormat) throws IOException {
+        ArrayList<Integer> rightSide = reduction.getRightSide();
+        ArrayList<String> actions = reduction.getProductionActions();
+        ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(reduction.getLeftSide());
+
+        for (int i = 0; i < actions.size(); i++) {
+            Matcher matcher = ATTRIBUTE_REFERENCE.matcher(actions.get(i));
+            StringBuffer action = new StringBuffer();
+            while (matcher.find()) {
+                int position = Integer.parseInt(matcher.group(1));
+                int offset = rightSide.size() - 1 - position;
+                String stackPosition = String.format(positionFormat, offset != 0 ? "top - " + offset : "top");
+                String value;
+                if (isArena()) {
+                    value = getArenaValue(rightSide.get(position), matcher.group(2), stackPosition);
+                } else {
+                    value = valueStacks.getValue(rightSide.get(position), matcher.group(2), stackPosition);
+                }
+                matcher.appendReplacement(action, Matcher.quoteReplacement(value));
+            }
+            matcher.appendTail(action);
+
+            indentWriter.printf("%s result%d = %s;", attributes.get(i).getType(), i, action);
+            indentWriter.println();
         }
     }
-}
\ No newline at end of file
+
+    private void printStartSymbolCreation(IndentWriter indentWriter, ValueStacks valueStacks) throws IOException {
+        int symbol = getStartProduction().getRightSide().get(0);
+        ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(symbol);
+
+        indentWriter.printf("return new %sParseTree(", grammar.getSymbolName(symbol));
+        for (int i = 0; i < attributes.size(); i++) {
+            indentWriter.printWithoutIndent(valueStacks.getValue(symbol, attributes.get(i).getName(), "top"));
+            if (i != attributes.size() - 1) {
+                indentWriter.printWithoutIndent(", ");
+            }
+        }
+        indentWriter.printWithoutIndent(");");
+        indentWriter.println();
+    }
+}
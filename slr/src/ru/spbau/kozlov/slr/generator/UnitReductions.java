@@ -0,0 +1,100 @@
+package ru.spbau.kozlov.slr.generator;
+
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.model.Attribute;
+import ru.spbau.kozlov.slr.gramar.model.Production;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Unit productions A -> X whose actions only copy the attributes of X, such that every attribute of A is kept
+ * in the same value stack as the copied one. Without parse trees a reduction by such a production changes nothing
+ * but the state on top of the stack, so the transitions into a state only reducing by it may go straight to
+ * the goto by A from the state below.
+ *
+ * @author adkozlov
+ */
+class UnitReductions {
+
+    private static final Pattern ATTRIBUTE_COPY = Pattern.compile("\\$0\\.(\\w+)");
+
+    private final int productionsCount;
+    private final int[] leftSides;
+    private final BitSet bypassed = new BitSet();
+
+    public UnitReductions(EnrichedGrammar grammar, ValueStacks valueStacks) {
+        int nonTerminalsCount = grammar.getNonTerminalsCount();
+
+        int count = 0;
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : grammar.getProductions(i)) {
+                count = Math.max(count, production.getId() + 1);
+            }
+        }
+        productionsCount = count;
+
+        leftSides = new int[productionsCount];
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : grammar.getProductions(i)) {
+                leftSides[production.getId()] = i;
+                if (i != grammar.getStartSymbolCode() && isAttributesCopy(grammar, valueStacks, i, production)) {
+                    bypassed.set(production.getId());
+                }
+            }
+        }
+    }
+
+    private static boolean isAttributesCopy(EnrichedGrammar grammar, ValueStacks valueStacks, int leftSide, Production production) {
+        ArrayList<Integer> rightSide = production.getRightSide();
+        ArrayList<String> actions = production.getActions();
+        ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(leftSide);
+        if (rightSide.size() != 1 || actions.size() != attributes.size()) {
+            return false;
+        }
+
+        int symbol = rightSide.get(0);
+        ArrayList<Attribute> symbolAttributes = grammar.getSymbolAttributes().get(symbol);
+        for (int i = 0; i < actions.size(); i++) {
+            Matcher matcher = ATTRIBUTE_COPY.matcher(actions.get(i).trim());
+            if (!matcher.matches()) {
+                return false;
+            }
+
+            int index = getAttributeIndex(symbolAttributes, matcher.group(1));
+            if (index == -1
+                    || !symbolAttributes.get(index).getType().equals(attributes.get(i).getType())
+                    || !valueStacks.getStack(symbol, index).equals(valueStacks.getStack(leftSide, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getAttributeIndex(ArrayList<Attribute> attributes, String name) {
+        for (int i = 0; i < attributes.size(); i++) {
+            if (attributes.get(i).getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int getProductionsCount() {
+        return productionsCount;
+    }
+
+    public int getLeftSide(int productionId) {
+        return leftSides[productionId];
+    }
+
+    public boolean isBypassed(int productionId) {
+        return bypassed.get(productionId);
+    }
+
+    public int getBypassedCount() {
+        return bypassed.cardinality();
+    }
+}
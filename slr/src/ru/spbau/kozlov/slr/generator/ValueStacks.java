@@ -0,0 +1,86 @@
+package ru.spbau.kozlov.slr.generator;
+
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.model.Attribute;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Typed value stacks of a parser evaluating attributes without parse trees.
+ * Attributes of a primitive type are kept in arrays of this type, all the other attributes in object arrays.
+ * The i-th attribute of a symbol among the attributes stored in the arrays of one type goes to the i-th of these arrays,
+ * so every stack position holds the attributes of the symbol in the same position of the state stack.
+ * The same arrays indexed by nodes are the attribute slots of a parse tree arena.
+ *
+ * @author adkozlov
+ */
+class ValueStacks {
+
+    private static final Set<String> PRIMITIVE_TYPES = new HashSet<>(Arrays.asList(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double"));
+    private static final String OBJECT_TYPE = "Object";
+
+    private final EnrichedGrammar grammar;
+    private final ArrayList<ArrayList<String>> stacks = new ArrayList<>();
+    private final Map<String, String> elementTypes = new TreeMap<>();
+
+    public ValueStacks(EnrichedGrammar grammar) {
+        this.grammar = grammar;
+
+        for (ArrayList<Attribute> attributes : grammar.getSymbolAttributes()) {
+            ArrayList<String> symbolStacks = new ArrayList<>(attributes.size());
+            Map<String, Integer> counts = new HashMap<>();
+            for (Attribute attribute : attributes) {
+                String elementType = getElementType(attribute.getType());
+                int index = counts.getOrDefault(elementType, 0);
+                counts.put(elementType, index + 1);
+
+                String stack = elementType.toLowerCase() + "Values" + index;
+                elementTypes.put(stack, elementType);
+                symbolStacks.add(stack);
+            }
+            stacks.add(symbolStacks);
+        }
+    }
+
+    /**
+     * @return element types of all the stacks by their names
+     */
+    public Map<String, String> getElementTypes() {
+        return elementTypes;
+    }
+
+    public String getStack(int symbol, int attributeIndex) {
+        return stacks.get(symbol).get(attributeIndex);
+    }
+
+    /**
+     * @return the expression reading the attribute of the symbol stored at the given stack position
+     */
+    public String getValue(int symbol, String attributeName, String position) {
+        ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(symbol);
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            if (attribute.getName().equals(attributeName)) {
+                String value = String.format("%s[%s]", getStack(symbol, i), position);
+                return isPrimitive(attribute.getType()) ? value : String.format("((%s) %s)", attribute.getType(), value);
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("Symbol %s has no attribute %s", grammar.getSymbolName(symbol), attributeName));
+    }
+
+    private static boolean isPrimitive(String type) {
+        return PRIMITIVE_TYPES.contains(type);
+    }
+
+    private static String getElementType(String type) {
+        return isPrimitive(type) ? type : OBJECT_TYPE;
+    }
+}
@@ -6,35 +6,138 @@ import ru.spbau.kozlov.slr.gramar.model.Item;
 
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @author adkozlov
  */
 public class Automaton {
 
+    /**
+     * Transitions are stored as sorted symbols with their targets, for small alphabets they are also expanded into
+     * an array indexed by symbols.
+     */
     public static class State {
 
-        private final TreeSet<Item> state;
-        private final int[] step;
+        private static final int MAX_DENSE_SYMBOLS_COUNT = 256;
 
-        private State(TreeSet<Item> items, int size) {
-            this.state = items;
-            step = new int[size];
-            Arrays.fill(step, -1);
+        private final GrammarItems grammarItems;
+        private final int[] items;
+        private int[] symbols;
+        private int[] targets;
+        private int[] step;
+
+        private State(GrammarItems grammarItems, int[] items) {
+            this.grammarItems = grammarItems;
+            this.items = items;
+        }
+
+        State(GrammarItems grammarItems, int[] items, int[] symbols, int[] targets, int symbolsCount) {
+            this(grammarItems, items);
+            setTransitions(symbols, targets, symbolsCount);
         }
 
+        private void setTransitions(int[] symbols, int[] targets, int symbolsCount) {
+            this.symbols = symbols;
+            this.targets = targets;
+            if (symbolsCount <= MAX_DENSE_SYMBOLS_COUNT) {
+                step = new int[symbolsCount];
+                Arrays.fill(step, -1);
+                for (int i = 0; i < symbols.length; i++) {
+                    step[symbols[i]] = targets[i];
+                }
+            }
+        }
+
+        /**
+         * @return the view of the packed items, which is created on every call
+         */
         public TreeSet<Item> getItems() {
-            return state;
+            TreeSet<Item> result = new TreeSet<>();
+            for (int item : items) {
+                result.add(grammarItems.toItem(item));
+            }
+            return result;
         }
 
-        public int[] getStep() {
-            return step;
+        /**
+         * @return the sorted items packed by {@link GrammarItems}
+         */
+        int[] getPackedItems() {
+            return items;
+        }
+
+        /**
+         * @return the target of the transition by the symbol or -1 if there is no such transition
+         */
+        public int getNext(int symbol) {
+            if (step != null) {
+                return step[symbol];
+            }
+            int index = Arrays.binarySearch(symbols, symbol);
+            return index >= 0 ? targets[index] : -1;
+        }
+
+        public int getTransitionsCount() {
+            return symbols.length;
+        }
+
+        /**
+         * @return the index of the transition by the symbol in the order of symbols or -1 if there is no such transition
+         */
+        public int getTransitionIndex(int symbol) {
+            int index = Arrays.binarySearch(symbols, symbol);
+            return index >= 0 ? index : -1;
+        }
+
+        public int getTransitionSymbol(int index) {
+            return symbols[index];
+        }
+
+        public int getTransitionTarget(int index) {
+            return targets[index];
         }
     }
 
+    /**
+     * Sorted packed items of a kernel compared by their contents.
+     */
+    private static final class Kernel {
+
+        private final int[] items;
+        private final int hashCode;
+
+        private Kernel(int[] items) {
+            this.items = items;
+            hashCode = Arrays.hashCode(items);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Kernel && Arrays.equals(items, ((Kernel) o).items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    public enum Type {
+        SLR,
+        LALR
+    }
+
+    private final Type type;
     private final ArrayList<State> states;
     private final ArrayList<Item[]> reduces = new ArrayList<>();
 
+    public Type getType() {
+        return type;
+    }
+
     public ArrayList<State> getStates() {
         return states;
     }
@@ -43,27 +146,45 @@ public class Automaton {
         return reduces;
     }
 
-    private Automaton(ArrayList<State> states, GrammarInformation grammarInformation, int symbolsCount) throws ShiftReduceConflictException, ReduceReduceConflictException {
+    Automaton(Type type, ArrayList<State> states, ArrayList<Item[]> reduces) {
+        this.type = type;
         this.states = states;
+        this.reduces.addAll(reduces);
+    }
 
-        for (State state : states) {
+    /**
+     * @param lookaheads the lookaheads of the items of the states, null for the items with the dot not last
+     */
+    private Automaton(Type type, GrammarItems grammarItems, ArrayList<State> states, ArrayList<BitSet[]> lookaheads, int symbolsCount) throws ShiftReduceConflictException, ReduceReduceConflictException {
+        this.type = type;
+        this.states = states;
+
+        Item[] views = new Item[grammarItems.getItemsCount()];
+        for (int i = 0; i < states.size(); i++) {
+            State state = states.get(i);
+            int[] stateItems = state.getPackedItems();
+            BitSet[] stateLookaheads = lookaheads.get(i);
             Item[] items = new Item[symbolsCount + 1]; // EOF
 
-            for (Item item : state.getItems()) {
-                if (item.dotIsLast()) {
-                    for (int symbol : grammarInformation.getFollows().get(item.getLeftSide())) {
-                        if (symbol == -1) {
-                            symbol = symbolsCount;
-                        }
-                        if (items[symbol] != null && items[symbol].getProductionId() != item.getProductionId()) {
-                            throw new ReduceReduceConflictException();
-                        }
-                        if (symbol != symbolsCount && state.getStep()[symbol] != -1) {
-                            throw new ShiftReduceConflictException();
-                        }
-
-                        items[symbol] = item;
+            for (int j = 0; j < stateItems.length; j++) {
+                int item = stateItems[j];
+                if (!grammarItems.dotIsLast(item)) {
+                    continue;
+                }
+                if (views[item] == null) {
+                    views[item] = grammarItems.toItem(item);
+                }
+
+                BitSet lookahead = stateLookaheads[j];
+                for (int symbol = lookahead.nextSetBit(0); symbol >= 0; symbol = lookahead.nextSetBit(symbol + 1)) {
+                    if (items[symbol] != null && items[symbol].getProductionId() != grammarItems.getProductionId(item)) {
+                        throw new ReduceReduceConflictException();
+                    }
+                    if (symbol != symbolsCount && state.getNext(symbol) != -1) {
+                        throw new ShiftReduceConflictException();
                     }
+
+                    items[symbol] = views[item];
                 }
             }
 
@@ -72,100 +193,167 @@ public class Automaton {
     }
 
     public static Automaton createAutomaton(EnrichedGrammar enrichedGrammar) throws ShiftReduceConflictException, ReduceReduceConflictException {
-        TreeSet<Item> initialState = getInitialState(enrichedGrammar);
-        Map<TreeSet<Item>, Integer> statesNumbering = new TreeMap<>((o1, o2) -> {
-            int result = Integer.compare(o1.size(), o2.size());
-            if (result != 0) {
-                return result;
-            }
-
-            for (Iterator<Item> it1 = o1.iterator(), it2 = o2.iterator(); it1.hasNext() && it2.hasNext(); ) {
-                result = it1.next().compareTo(it2.next());
-                if (result != 0) {
-                    return result;
-                }
-            }
+        return createAutomaton(enrichedGrammar, Type.SLR);
+    }
 
-            return 0;
-        });
-        statesNumbering.put(initialState, 0);
-        statesNumbering.put(new TreeSet<>(), -1);
+    public static Automaton createAutomaton(EnrichedGrammar enrichedGrammar, Type type) throws ShiftReduceConflictException, ReduceReduceConflictException {
+        GrammarItems grammarItems = enrichedGrammar.getGrammarItems();
+        ArrayList<State> states = getStates(enrichedGrammar, grammarItems);
+        ArrayList<BitSet[]> lookaheads = type == Type.LALR
+                ? LALRLookaheads.getLookaheads(enrichedGrammar, grammarItems, states)
+                : getFollowLookaheads(enrichedGrammar, grammarItems, states);
 
-        int symbolsCount = enrichedGrammar.getSymbolsCount();
-        ArrayList<State> states = new ArrayList<>(Collections.singletonList(new State(initialState, symbolsCount)));
+        return new Automaton(type, grammarItems, states, lookaheads, enrichedGrammar.getSymbolsCount());
+    }
 
-        for (int i = 0; i < states.size(); i++) {
-            State state = states.get(i);
+    /**
+     * States are expanded level by level: successor kernels of the whole frontier and closures of the new states
+     * are computed in parallel, while the new states are numbered sequentially in the order of their predecessors
+     * and symbols, so the numbering is the same as in the breadth-first search.
+     */
+    private static ArrayList<State> getStates(EnrichedGrammar enrichedGrammar, GrammarItems grammarItems) {
+        int startSymbolCode = enrichedGrammar.getStartSymbolCode();
+        int[] initialKernel = {grammarItems.getItem(enrichedGrammar.getProductions(startSymbolCode).get(0).getId(), 0)};
+        Map<Kernel, Integer> statesNumbering = new HashMap<>();
+        statesNumbering.put(new Kernel(initialKernel), 0);
 
-            int[] stateStep = state.getStep();
-            for (int j = 0; j < stateStep.length; j++) {
-                TreeSet<Item> closure = getClosure(enrichedGrammar,
-                        performStep(enrichedGrammar, state.getItems(), j));
-                Integer index = statesNumbering.get(closure);
-
-                if (index != null) {
-                    stateStep[j] = index;
-                } else {
-                    stateStep[j] = states.size();
-                    statesNumbering.put(closure, states.size());
-                    states.add(new State(closure, symbolsCount));
+        int symbolsCount = enrichedGrammar.getSymbolsCount();
+        ArrayList<State> states = new ArrayList<>(Collections.singletonList(
+                new State(grammarItems, getClosure(enrichedGrammar, grammarItems, initialKernel))));
+
+        int levelStart = 0;
+        while (levelStart < states.size()) {
+            int levelEnd = states.size();
+            List<int[][]> successors = getParallelStream(levelStart, levelEnd)
+                    .mapToObj(i -> getSuccessorKernels(grammarItems, states.get(i)))
+                    .collect(Collectors.toList());
+
+            ArrayList<int[]> kernels = new ArrayList<>();
+            for (int i = levelStart; i < levelEnd; i++) {
+                int[][] stateSuccessors = successors.get(i - levelStart);
+                int[] symbols = new int[stateSuccessors.length];
+                int[] targets = new int[stateSuccessors.length];
+                for (int j = 0; j < stateSuccessors.length; j++) {
+                    int[] kernel = stateSuccessors[j];
+                    Kernel key = new Kernel(kernel);
+                    Integer index = statesNumbering.get(key);
+                    if (index == null) {
+                        index = levelEnd + kernels.size();
+                        statesNumbering.put(key, index);
+                        kernels.add(kernel);
+                    }
+                    symbols[j] = grammarItems.getSymbolAfterDot(kernel[0] - 1);
+                    targets[j] = index;
                 }
+                states.get(i).setTransitions(symbols, targets, symbolsCount);
             }
+
+            getParallelStream(0, kernels.size())
+                    .mapToObj(i -> new State(grammarItems, getClosure(enrichedGrammar, grammarItems, kernels.get(i))))
+                    .forEachOrdered(states::add);
+            levelStart = levelEnd;
         }
 
-        return new Automaton(states, enrichedGrammar.getGrammarInformation(), symbolsCount);
+        return states;
     }
 
-    private static TreeSet<Item> getInitialState(EnrichedGrammar enrichedGrammar) {
-        int startSymbolCode = enrichedGrammar.getStartSymbolCode();
-        return getClosure(enrichedGrammar, new TreeSet<>(Collections.singletonList(
-                new Item(enrichedGrammar,
-                        startSymbolCode,
-                        enrichedGrammar.getProductions(startSymbolCode).get(0),
-                        0))));
+    private static IntStream getParallelStream(int from, int to) {
+        IntStream result = IntStream.range(from, to);
+        return to - from >= PARALLEL_THRESHOLD ? result.parallel() : result;
     }
 
-    private static TreeSet<Item> performEpsMove(EnrichedGrammar enrichedGrammar, Item item) {
-        if (item.dotIsLast()) {
-            return new TreeSet<>();
+    /**
+     * Groups the items of the state by the symbols after their dots, so the work is proportional to the number of transitions.
+     * The items of a state are sorted, so the items with the dot moved over a symbol are sorted too.
+     *
+     * @return the kernels of the successors in the order of the symbols of their transitions
+     */
+    private static int[][] getSuccessorKernels(GrammarItems grammarItems, State state) {
+        int[] items = state.getPackedItems();
+        int[] symbols = new int[items.length];
+        int symbolsCount = 0;
+        for (int item : items) {
+            int symbol = grammarItems.getSymbolAfterDot(item);
+            if (symbol != GrammarItems.NO_SYMBOL) {
+                symbols[symbolsCount++] = symbol;
+            }
+        }
+        Arrays.sort(symbols, 0, symbolsCount);
+
+        int[] sizes = new int[symbolsCount];
+        int distinctSymbolsCount = 0;
+        for (int i = 0; i < symbolsCount; i++) {
+            if (i == 0 || symbols[i] != symbols[i - 1]) {
+                symbols[distinctSymbolsCount++] = symbols[i];
+            }
+            sizes[distinctSymbolsCount - 1]++;
         }
 
-        int symbol = item.getSymbolAfterDot();
-        if (enrichedGrammar.isTerminal(symbol)) {
-            return new TreeSet<>();
+        int[][] result = new int[distinctSymbolsCount][];
+        for (int i = 0; i < distinctSymbolsCount; i++) {
+            result[i] = new int[sizes[i]];
+            sizes[i] = 0;
+        }
+        for (int item : items) {
+            int symbol = grammarItems.getSymbolAfterDot(item);
+            if (symbol != GrammarItems.NO_SYMBOL) {
+                int index = Arrays.binarySearch(symbols, 0, distinctSymbolsCount, symbol);
+                result[index][sizes[index]++] = item + 1;
+            }
         }
 
-        return new TreeSet<>(enrichedGrammar.getProductions(symbol).stream()
-                .map(production -> new Item(enrichedGrammar, symbol, production, 0))
-                .collect(Collectors.toList()));
+        return result;
     }
 
-    private static TreeSet<Item> performStep(EnrichedGrammar enrichedGrammar, TreeSet<Item> items, int symbol) {
-        return new TreeSet<>(items.stream()
-                .filter(item -> !item.dotIsLast())
-                .filter(item -> item.getSymbolAfterDot() == symbol)
-                .map(item -> new Item(enrichedGrammar, item))
-                .collect(Collectors.toList()));
-    }
+    private static ArrayList<BitSet[]> getFollowLookaheads(EnrichedGrammar enrichedGrammar, GrammarItems grammarItems, ArrayList<State> states) {
+        GrammarInformation grammarInformation = enrichedGrammar.getGrammarInformation();
 
-    private static TreeSet<Item> getClosure(EnrichedGrammar enrichedGrammar, TreeSet<Item> set) {
-        TreeSet<Item> result = new TreeSet<>(set);
+        ArrayList<BitSet[]> result = new ArrayList<>(states.size());
+        for (State state : states) {
+            int[] items = state.getPackedItems();
+            BitSet[] lookaheads = new BitSet[items.length];
+            for (int i = 0; i < items.length; i++) {
+                if (grammarItems.dotIsLast(items[i])) {
+                    lookaheads[i] = grammarInformation.getFollow(grammarItems.getLeftSide(items[i]));
+                }
+            }
+            result.add(lookaheads);
+        }
 
-        boolean isItemAdded = true;
-        while (isItemAdded) {
-            isItemAdded = false;
+        return result;
+    }
 
-            for (Item item : result) {
-                for (Item addItem : performEpsMove(enrichedGrammar, item)) {
-                    isItemAdded |= result.add(addItem);
-                }
+    private static int[] getClosure(EnrichedGrammar enrichedGrammar, GrammarItems grammarItems, int[] kernel) {
+        boolean[] isExpanded = new boolean[enrichedGrammar.getNonTerminalsCount()];
+        int size = kernel.length;
+        for (int item : kernel) {
+            int symbol = grammarItems.getSymbolAfterDot(item);
+            if (symbol != GrammarItems.NO_SYMBOL && !enrichedGrammar.isTerminal(symbol) && !isExpanded[symbol]) {
+                isExpanded[symbol] = true;
+                size += grammarItems.getNonTerminalClosure(symbol).length;
+            }
+        }
+        if (size == kernel.length) {
+            return kernel;
+        }
 
-                if (isItemAdded) {
-                    break;
-                }
+        int[] result = Arrays.copyOf(kernel, size);
+        int index = kernel.length;
+        for (int symbol = 0; symbol < isExpanded.length; symbol++) {
+            if (isExpanded[symbol]) {
+                int[] closure = grammarItems.getNonTerminalClosure(symbol);
+                System.arraycopy(closure, 0, result, index, closure.length);
+                index += closure.length;
             }
         }
 
-        return result;
+        Arrays.sort(result);
+        int uniqueSize = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[uniqueSize++] = result[i];
+            }
+        }
+        return uniqueSize == result.length ? result : Arrays.copyOf(result, uniqueSize);
     }
 }
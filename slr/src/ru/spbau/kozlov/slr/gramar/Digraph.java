@@ -0,0 +1,76 @@
+package ru.spbau.kozlov.slr.gramar;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Computes F(x) = F'(x) + U { F(y) | x R y } for a relation R given by adjacency lists
+ * (DeRemer, Pennello. Efficient Computation of LALR(1) Look-Ahead Sets).
+ * Strongly connected components are found during the same traversal, so every edge is processed once.
+ *
+ * @author adkozlov
+ */
+final class Digraph {
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private Digraph() {
+    }
+
+    /**
+     * @param relation adjacency lists of the relation
+     * @param sets     initial sets F'(x), replaced by the resulting sets F(x);
+     *                 all members of a strongly connected component share the same instance
+     */
+    static void traverse(ArrayList<ArrayList<Integer>> relation, BitSet[] sets) {
+        int size = sets.length;
+        int[] numbers = new int[size];
+        int[] depths = new int[size];
+        int[] edgeIndices = new int[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] calls = new int[size];
+        int callsSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (numbers[i] != 0) {
+                continue;
+            }
+
+            calls[callsSize++] = i;
+            while (callsSize > 0) {
+                int x = calls[callsSize - 1];
+                if (numbers[x] == 0) {
+                    stack[stackSize++] = x;
+                    numbers[x] = depths[x] = stackSize;
+                }
+
+                ArrayList<Integer> edges = relation.get(x);
+                if (edgeIndices[x] < edges.size()) {
+                    int y = edges.get(edgeIndices[x]);
+                    if (numbers[y] == 0) {
+                        calls[callsSize++] = y;
+                        continue;
+                    }
+
+                    numbers[x] = Math.min(numbers[x], numbers[y]);
+                    if (sets[x] != sets[y]) {
+                        sets[x].or(sets[y]);
+                    }
+                    edgeIndices[x]++;
+                    continue;
+                }
+
+                if (numbers[x] == depths[x]) {
+                    int top;
+                    do {
+                        top = stack[--stackSize];
+                        numbers[top] = INFINITY;
+                        sets[top] = sets[x];
+                    } while (top != x);
+                }
+                callsSize--;
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@ import ru.spbau.kozlov.slr.gramar.model.Attribute;
 import ru.spbau.kozlov.slr.gramar.model.Production;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * @author adkozlov
@@ -17,7 +19,8 @@ public class EnrichedGrammar extends Grammar {
     private final ArrayList<String> symbolNames;
     private final ArrayList<ArrayList<Attribute>> symbolAttributes;
 
-    private Automaton automaton;
+    private final Map<Automaton.Type, Automaton> automata = new EnumMap<>(Automaton.Type.class);
+    private GrammarItems grammarItems;
 
     public EnrichedGrammar(Grammar grammar, ArrayList<String> symbolNames, ArrayList<ArrayList<Attribute>> symbolAttributes) {
         super(grammar);
@@ -26,12 +29,37 @@ public class EnrichedGrammar extends Grammar {
     }
 
     public Automaton getAutomaton() throws ShiftReduceConflictException, ReduceReduceConflictException {
+        return getAutomaton(Automaton.Type.SLR);
+    }
+
+    public Automaton getAutomaton(Automaton.Type type) throws ShiftReduceConflictException, ReduceReduceConflictException {
+        Automaton automaton = automata.get(type);
         if (automaton == null) {
-            automaton = Automaton.createAutomaton(this);
+            automaton = Automaton.createAutomaton(this, type);
+            automata.put(type, automaton);
         }
         return automaton;
     }
 
+    GrammarItems getGrammarItems() {
+        if (grammarItems == null) {
+            grammarItems = new GrammarItems(this);
+        }
+        return grammarItems;
+    }
+
+    public boolean isAutomatonBuilt(Automaton.Type type) {
+        return automata.containsKey(type);
+    }
+
+    Automaton getBuiltAutomaton(Automaton.Type type) {
+        return automata.get(type);
+    }
+
+    void setAutomaton(Automaton automaton) {
+        automata.put(automaton.getType(), automaton);
+    }
+
     public ArrayList<ArrayList<Attribute>> getSymbolAttributes() {
         return symbolAttributes;
     }
@@ -40,6 +68,7 @@ public class EnrichedGrammar extends Grammar {
         return symbolNames.get(i);
     }
 
+    @Override
     public int getSymbolsCount() {
         return symbolNames.size();
     }
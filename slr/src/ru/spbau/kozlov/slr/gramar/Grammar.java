@@ -2,10 +2,10 @@ package ru.spbau.kozlov.slr.gramar;
 
 import ru.spbau.kozlov.slr.gramar.model.Production;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * @author adkozlov
@@ -64,15 +64,19 @@ public class Grammar {
 
     public GrammarInformation getGrammarInformation() {
         if (grammarInformation == null) {
-            ArrayList<Boolean> nullable = getNullable();
-            ArrayList<Set<Integer>> firsts = getFirsts(nullable);
-            ArrayList<Set<Integer>> follows = getFollows(nullable, firsts);
-            grammarInformation = new GrammarInformation(nullable, firsts, follows);
+            BitSet nullable = getNullable();
+            BitSet[] firsts = getFirsts(nullable);
+            BitSet[] follows = getFollows(nullable, firsts);
+            grammarInformation = new GrammarInformation(getSymbolsCount(), nullable, firsts, follows);
         }
 
         return grammarInformation;
     }
 
+    void setGrammarInformation(GrammarInformation grammarInformation) {
+        this.grammarInformation = grammarInformation;
+    }
+
     protected int getProductionsCount() {
         return productions.size();
     }
@@ -89,6 +93,10 @@ public class Grammar {
         return startSymbolCode;
     }
 
+    public int getSymbolsCount() {
+        return nonTerminalsCount + terminalsMap.size();
+    }
+
     public int getNonTerminalsCount() {
         return nonTerminalsCount;
     }
@@ -102,122 +110,131 @@ public class Grammar {
         return "grammar name: " + grammarName + System.lineSeparator() + "grammar package: " + grammarPackage + System.lineSeparator();
     }
 
-    private ArrayList<Boolean> getNullable() {
-        ArrayList<Boolean> result = new ArrayList<>();
+    private BitSet getNullable() {
+        int productionsCount = 0;
         for (int i = 0; i < nonTerminalsCount; i++) {
-            result.add(false);
+            productionsCount += getProductions(i).size();
         }
 
-        boolean isNotFinished = true;
-        while (isNotFinished) {
-            isNotFinished = false;
+        // counters[p] is the number of right side symbols of production p not known to be nullable
+        int[] leftSides = new int[productionsCount];
+        int[] counters = new int[productionsCount];
+        ArrayList<ArrayList<Integer>> occurrences = initRelation();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
 
-            for (int i = 0; i < nonTerminalsCount; i++) {
-                if (result.get(i)) {
-                    continue;
-                }
-
-                for (Production production : getProductions(i)) {
-                    boolean isNullable = true;
-                    for (int j : production.getRightSide()) {
-                        if (isTerminal(j) || !result.get(j)) {
-                            isNullable = false;
-                            break;
-                        }
+        int p = 0;
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : getProductions(i)) {
+                leftSides[p] = i;
+
+                ArrayList<Integer> rightSide = production.getRightSide();
+                if (rightSide.stream().noneMatch(this::isTerminal)) {
+                    counters[p] = rightSide.size();
+                    for (int j : rightSide) {
+                        occurrences.get(j).add(p);
                     }
 
-                    if (isNullable) {
-                        result.set(i, true);
-                        isNotFinished = true;
+                    if (counters[p] == 0) {
+                        queue.add(i);
                     }
                 }
+                p++;
+            }
+        }
+
+        BitSet result = new BitSet(nonTerminalsCount);
+        while (!queue.isEmpty()) {
+            int symbol = queue.poll();
+            if (result.get(symbol)) {
+                continue;
+            }
+
+            result.set(symbol);
+            for (int j : occurrences.get(symbol)) {
+                if (--counters[j] == 0) {
+                    queue.add(leftSides[j]);
+                }
             }
         }
 
         return result;
     }
 
-    private ArrayList<Set<Integer>> getFirsts(ArrayList<Boolean> nullable) {
-        ArrayList<Set<Integer>> result = initSets();
-
-        boolean isNotFinished = true;
-        while (isNotFinished) {
-            isNotFinished = false;
-
-            for (int i = 0; i < nonTerminalsCount; i++) {
-                for (Production production : getProductions(i)) {
-                    for (int j : production.getRightSide()) {
-                        if (isTerminal(j)) {
-                            isNotFinished |= result.get(i).add(j);
-                            break;
-                        } else {
-                            for (int k : result.get(j)) {
-                                isNotFinished |= result.get(i).add(k);
-                            }
-
-                            if (!nullable.get(j)) {
-                                break;
-                            }
-                        }
+    private BitSet[] getFirsts(BitSet nullable) {
+        BitSet[] result = initSets();
+        ArrayList<ArrayList<Integer>> relation = initRelation();
+
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : getProductions(i)) {
+                for (int j : production.getRightSide()) {
+                    if (isTerminal(j)) {
+                        result[i].set(j);
+                        break;
+                    }
+
+                    relation.get(i).add(j);
+                    if (!nullable.get(j)) {
+                        break;
                     }
                 }
             }
         }
 
+        Digraph.traverse(relation, result);
         return result;
     }
 
-    private ArrayList<Set<Integer>> getFollows(ArrayList<Boolean> nullable, ArrayList<Set<Integer>> first) {
-        ArrayList<Set<Integer>> result = initSets();
-        result.get(startSymbolCode).add(-1); // EOF
-
-        boolean isNotFinished = true;
-        while (isNotFinished) {
-            isNotFinished = false;
-
-            for (int i = 0; i < nonTerminalsCount; i++) {
-                for (Production production : productions.get(i)) {
-                    for (int j = 0; j < production.getRightSide().size(); j++) {
-                        int jthItem = production.getRightSide().get(j);
-                        if (isTerminal(jthItem)) {
-                            continue;
-                        }
-
-                        boolean isSuffixNullable = true;
-                        for (int k = j + 1; k < production.getRightSide().size() && isSuffixNullable; k++) {
-                            int kthItem = production.getRightSide().get(k);
-
-                            if (isTerminal(kthItem)) {
-                                isNotFinished |= result.get(jthItem).add(kthItem);
-                                isSuffixNullable = false;
-                            } else {
-                                for (int symbol : first.get(kthItem)) {
-                                    isNotFinished |= result.get(jthItem).add(symbol);
-                                }
-
-                                if (!nullable.get(kthItem)) {
-                                    isSuffixNullable = false;
-                                }
-                            }
-                        }
-
-                        if (isSuffixNullable) {
-                            for (int symbol : result.get(i)) {
-                                isNotFinished |= result.get(jthItem).add(symbol);
-                            }
-                        }
+    private BitSet[] getFollows(BitSet nullable, BitSet[] firsts) {
+        BitSet[] result = initSets();
+        ArrayList<ArrayList<Integer>> relation = initRelation();
+        result[startSymbolCode].set(getSymbolsCount()); // EOF
+
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : productions.get(i)) {
+                ArrayList<Integer> rightSide = production.getRightSide();
+
+                BitSet suffixFirst = new BitSet();
+                boolean isSuffixNullable = true;
+                for (int j = rightSide.size() - 1; j >= 0; j--) {
+                    int jthItem = rightSide.get(j);
+                    if (isTerminal(jthItem)) {
+                        suffixFirst.clear();
+                        suffixFirst.set(jthItem);
+                        isSuffixNullable = false;
+                        continue;
+                    }
+
+                    result[jthItem].or(suffixFirst);
+                    if (isSuffixNullable) {
+                        relation.get(jthItem).add(i);
+                    }
+
+                    if (!nullable.get(jthItem)) {
+                        suffixFirst.clear();
+                        isSuffixNullable = false;
                     }
+                    suffixFirst.or(firsts[jthItem]);
                 }
             }
         }
 
+        Digraph.traverse(relation, result);
+        return result;
+    }
+
+    private BitSet[] initSets() {
+        BitSet[] result = new BitSet[nonTerminalsCount];
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            result[i] = new BitSet();
+        }
+
         return result;
     }
 
-    private ArrayList<Set<Integer>> initSets() {
-        ArrayList<Set<Integer>> result = new ArrayList<>();
+    private ArrayList<ArrayList<Integer>> initRelation() {
+        ArrayList<ArrayList<Integer>> result = new ArrayList<>(nonTerminalsCount);
         for (int i = 0; i < nonTerminalsCount; i++) {
-            result.add(new HashSet<>());
+            result.add(new ArrayList<>());
         }
 
         return result;
@@ -1,32 +1,144 @@
 package ru.spbau.kozlov.slr.gramar;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
+ * Nullable, FIRST and FOLLOW sets of non-terminals. Terminals are stored as bits with their symbol codes,
+ * EOF is stored as the bit {@code symbolsCount}.
+ *
  * @author adkozlov
  */
 public class GrammarInformation {
 
-    private final ArrayList<Boolean> nullable;
-    private final ArrayList<Set<Integer>> firsts;
-    private final ArrayList<Set<Integer>> follows;
+    private final int symbolsCount;
+    private final BitSet nullable;
+    private final BitSet[] firsts;
+    private final BitSet[] follows;
 
-    public GrammarInformation(ArrayList<Boolean> nullable, ArrayList<Set<Integer>> firsts, ArrayList<Set<Integer>> follows) {
+    public GrammarInformation(int symbolsCount, BitSet nullable, BitSet[] firsts, BitSet[] follows) {
+        this.symbolsCount = symbolsCount;
         this.nullable = nullable;
         this.firsts = firsts;
         this.follows = follows;
     }
 
-    public ArrayList<Boolean> getNullable() {
-        return nullable;
+    public boolean isNullable(int symbol) {
+        return nullable.get(symbol);
     }
 
-    public ArrayList<Set<Integer>> getFirsts() {
-        return firsts;
+    public BitSet getFirst(int symbol) {
+        return firsts[symbol];
     }
 
-    public ArrayList<Set<Integer>> getFollows() {
-        return follows;
+    public BitSet getFollow(int symbol) {
+        return follows[symbol];
+    }
+
+    public int getEOFIndex() {
+        return symbolsCount;
+    }
+
+    public List<Boolean> getNullable() {
+        return new AbstractList<Boolean>() {
+            @Override
+            public Boolean get(int index) {
+                if (index < 0 || index >= firsts.length) {
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                }
+                return nullable.get(index);
+            }
+
+            @Override
+            public int size() {
+                return firsts.length;
+            }
+        };
+    }
+
+    /**
+     * @return read-only views of the FIRST sets
+     */
+    public List<Set<Integer>> getFirsts() {
+        return new SetsView(firsts);
+    }
+
+    /**
+     * @return read-only views of the FOLLOW sets, EOF is represented by -1
+     */
+    public List<Set<Integer>> getFollows() {
+        return new SetsView(follows);
+    }
+
+    private class SetsView extends AbstractList<Set<Integer>> {
+
+        private final BitSet[] sets;
+
+        public SetsView(BitSet[] sets) {
+            this.sets = sets;
+        }
+
+        @Override
+        public Set<Integer> get(int index) {
+            return new SetView(sets[index]);
+        }
+
+        @Override
+        public int size() {
+            return sets.length;
+        }
+    }
+
+    private class SetView extends AbstractSet<Integer> {
+
+        private final BitSet set;
+
+        public SetView(BitSet set) {
+            this.set = set;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Integer)) {
+                return false;
+            }
+
+            int symbol = (Integer) o;
+            return symbol == -1 ? set.get(symbolsCount) : symbol >= 0 && symbol < symbolsCount && set.get(symbol);
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+
+                private int next = set.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Integer next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+
+                    int result = next;
+                    next = set.nextSetBit(next + 1);
+                    return result == symbolsCount ? -1 : result;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return set.cardinality();
+        }
     }
 }
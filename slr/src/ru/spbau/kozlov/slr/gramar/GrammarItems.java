@@ -0,0 +1,153 @@
+package ru.spbau.kozlov.slr.gramar;
+
+import ru.spbau.kozlov.slr.gramar.model.Item;
+import ru.spbau.kozlov.slr.gramar.model.Production;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * LR(0) items of a grammar packed into ints: the item of production p with the dot at position d is
+ * the first item of p plus d, so the items of a production are consecutive and ordered as the {@link Item}s are.
+ * The symbols after the dots are the right sides of the productions laid out in a single array with -1 after each of them.
+ *
+ * @author adkozlov
+ */
+final class GrammarItems {
+
+    static final int NO_SYMBOL = -1;
+
+    private final EnrichedGrammar enrichedGrammar;
+    private final Production[] productions;
+    private final int[] firstItems;
+    private final int[] leftSides;
+    private final int[] productionIds;
+    private final int[] symbolsAfterDot;
+    private final int[][] nonTerminalClosures;
+
+    GrammarItems(EnrichedGrammar enrichedGrammar) {
+        this.enrichedGrammar = enrichedGrammar;
+        int nonTerminalsCount = enrichedGrammar.getNonTerminalsCount();
+
+        int productionsCount = 0;
+        int itemsCount = 0;
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : enrichedGrammar.getProductions(i)) {
+                productionsCount = Math.max(productionsCount, production.getId() + 1);
+                itemsCount += production.getRightSide().size() + 1;
+            }
+        }
+
+        productions = new Production[productionsCount];
+        int[] productionLeftSides = new int[productionsCount];
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : enrichedGrammar.getProductions(i)) {
+                productions[production.getId()] = production;
+                productionLeftSides[production.getId()] = i;
+            }
+        }
+
+        firstItems = new int[productionsCount];
+        leftSides = new int[itemsCount];
+        productionIds = new int[itemsCount];
+        symbolsAfterDot = new int[itemsCount];
+        int item = 0;
+        for (int i = 0; i < productionsCount; i++) {
+            firstItems[i] = item;
+            if (productions[i] == null) {
+                continue;
+            }
+
+            for (int symbol : productions[i].getRightSide()) {
+                leftSides[item] = productionLeftSides[i];
+                productionIds[item] = i;
+                symbolsAfterDot[item++] = symbol;
+            }
+            leftSides[item] = productionLeftSides[i];
+            productionIds[item] = i;
+            symbolsAfterDot[item++] = NO_SYMBOL;
+        }
+
+        nonTerminalClosures = getNonTerminalClosures();
+    }
+
+    int getItemsCount() {
+        return symbolsAfterDot.length;
+    }
+
+    int getItem(int productionId, int dot) {
+        return firstItems[productionId] + dot;
+    }
+
+    int getLeftSide(int item) {
+        return leftSides[item];
+    }
+
+    int getProductionId(int item) {
+        return productionIds[item];
+    }
+
+    int getDot(int item) {
+        return item - firstItems[productionIds[item]];
+    }
+
+    /**
+     * @return the symbol after the dot or {@link #NO_SYMBOL} if the dot is last
+     */
+    int getSymbolAfterDot(int item) {
+        return symbolsAfterDot[item];
+    }
+
+    boolean dotIsLast(int item) {
+        return symbolsAfterDot[item] == NO_SYMBOL;
+    }
+
+    /**
+     * @return the sorted items B -> .w of all non-terminals B reachable from the non-terminal
+     * through the leftmost symbols of productions, i.e. the closure of the item set {X -> u.Av} without its kernel
+     */
+    int[] getNonTerminalClosure(int nonTerminal) {
+        return nonTerminalClosures[nonTerminal];
+    }
+
+    Item toItem(int item) {
+        return new Item(enrichedGrammar, leftSides[item], productions[productionIds[item]], getDot(item));
+    }
+
+    private int[][] getNonTerminalClosures() {
+        int nonTerminalsCount = enrichedGrammar.getNonTerminalsCount();
+        int[][] result = new int[nonTerminalsCount][];
+
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            int[] items = new int[0];
+            int size = 0;
+            boolean[] isVisited = new boolean[nonTerminalsCount];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(i);
+            isVisited[i] = true;
+
+            while (!queue.isEmpty()) {
+                int symbol = queue.poll();
+                for (Production production : enrichedGrammar.getProductions(symbol)) {
+                    int item = firstItems[production.getId()];
+                    if (size == items.length) {
+                        items = Arrays.copyOf(items, Math.max(4, 2 * size));
+                    }
+                    items[size++] = item;
+
+                    int nextSymbol = symbolsAfterDot[item];
+                    if (nextSymbol != NO_SYMBOL && !enrichedGrammar.isTerminal(nextSymbol) && !isVisited[nextSymbol]) {
+                        isVisited[nextSymbol] = true;
+                        queue.add(nextSymbol);
+                    }
+                }
+            }
+
+            items = Arrays.copyOf(items, size);
+            Arrays.sort(items);
+            result[i] = items;
+        }
+
+        return result;
+    }
+}
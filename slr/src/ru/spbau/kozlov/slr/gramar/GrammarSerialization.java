@@ -0,0 +1,349 @@
+package ru.spbau.kozlov.slr.gramar;
+
+import ru.spbau.kozlov.slr.gramar.model.Attribute;
+import ru.spbau.kozlov.slr.gramar.model.Item;
+import ru.spbau.kozlov.slr.gramar.model.Production;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary form of an analyzed grammar: symbols, productions, nullable, FIRST and FOLLOW sets and the automata built so far
+ * with the transitions and the reductions of their states stored sparsely.
+ * Productions are referred to by their ranks in the order of ids and are recreated in this order with their ranks as ids,
+ * so a grammar read back gets the same production ids as the parsed one.
+ * The header holds the length and the CRC-32 of the payload, and every count and index read is checked against
+ * the remaining bytes and the bounds of the grammar, so a damaged file is rejected instead of being read.
+ *
+ * @author adkozlov
+ */
+public final class GrammarSerialization {
+
+    public static final int VERSION = 4;
+
+    private static final int MAGIC = 0x534c5247;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    private GrammarSerialization() {
+    }
+
+    public static void write(EnrichedGrammar grammar, DataOutputStream outputStream) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        writePayload(grammar, new DataOutputStream(payload));
+        byte[] bytes = payload.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+
+        outputStream.writeInt(MAGIC);
+        outputStream.writeInt(VERSION);
+        outputStream.writeInt(bytes.length);
+        outputStream.writeInt((int) checksum.getValue());
+        outputStream.write(bytes);
+    }
+
+    private static void writePayload(EnrichedGrammar grammar, DataOutputStream outputStream) throws IOException {
+        int nonTerminalsCount = grammar.getNonTerminalsCount();
+        int symbolsCount = grammar.getSymbolsCount();
+
+        writeString(outputStream, grammar.getGrammarName());
+        writeString(outputStream, grammar.getGrammarPackage());
+        outputStream.writeInt(grammar.getOriginalStartSymbolCode());
+        outputStream.writeInt(grammar.getStartSymbolCode());
+        outputStream.writeInt(nonTerminalsCount);
+        outputStream.writeInt(symbolsCount);
+
+        for (int i = 0; i < symbolsCount; i++) {
+            String symbolName = grammar.getSymbolName(i);
+            writeString(outputStream, symbolName);
+            if (grammar.isTerminal(i)) {
+                writeString(outputStream, grammar.getToken(symbolName));
+            }
+
+            ArrayList<Attribute> attributes = grammar.getSymbolAttributes().get(i);
+            outputStream.writeInt(attributes.size());
+            for (Attribute attribute : attributes) {
+                writeString(outputStream, attribute.getType());
+                writeString(outputStream, attribute.getName());
+            }
+        }
+
+        ArrayList<Production> productions = getProductions(grammar);
+        Map<Integer, Integer> ranks = new HashMap<>();
+        Map<Production, Integer> leftSides = new HashMap<>();
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            for (Production production : grammar.getProductions(i)) {
+                leftSides.put(production, i);
+            }
+        }
+
+        outputStream.writeInt(productions.size());
+        for (Production production : productions) {
+            ranks.put(production.getId(), ranks.size());
+            outputStream.writeInt(leftSides.get(production));
+
+            ArrayList<Integer> rightSide = production.getRightSide();
+            outputStream.writeInt(rightSide.size());
+            for (int symbol : rightSide) {
+                outputStream.writeInt(symbol);
+            }
+            outputStream.writeInt(production.getActions().size());
+            for (String action : production.getActions()) {
+                writeString(outputStream, action);
+            }
+        }
+
+        GrammarInformation grammarInformation = grammar.getGrammarInformation();
+        BitSet nullable = new BitSet(nonTerminalsCount);
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            nullable.set(i, grammarInformation.isNullable(i));
+        }
+        writeBitSet(outputStream, nullable);
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            writeBitSet(outputStream, grammarInformation.getFirst(i));
+            writeBitSet(outputStream, grammarInformation.getFollow(i));
+        }
+
+        ArrayList<Automaton> automata = new ArrayList<>();
+        for (Automaton.Type type : Automaton.Type.values()) {
+            Automaton automaton = grammar.getBuiltAutomaton(type);
+            if (automaton != null) {
+                automata.add(automaton);
+            }
+        }
+        GrammarItems grammarItems = grammar.getGrammarItems();
+        outputStream.writeInt(automata.size());
+        for (Automaton automaton : automata) {
+            outputStream.writeInt(automaton.getType().ordinal());
+
+            ArrayList<Automaton.State> states = automaton.getStates();
+            outputStream.writeInt(states.size());
+            for (int i = 0; i < states.size(); i++) {
+                Automaton.State state = states.get(i);
+                outputStream.writeInt(state.getPackedItems().length);
+                for (int item : state.getPackedItems()) {
+                    outputStream.writeInt(ranks.get(grammarItems.getProductionId(item)));
+                    outputStream.writeInt(grammarItems.getDot(item));
+                }
+                outputStream.writeInt(state.getTransitionsCount());
+                for (int j = 0; j < state.getTransitionsCount(); j++) {
+                    outputStream.writeInt(state.getTransitionSymbol(j));
+                    outputStream.writeInt(state.getTransitionTarget(j));
+                }
+                Item[] stateReduces = automaton.getReduces().get(i);
+                int reducesCount = 0;
+                for (Item item : stateReduces) {
+                    if (item != null) {
+                        reducesCount++;
+                    }
+                }
+                outputStream.writeInt(reducesCount);
+                for (int symbol = 0; symbol < stateReduces.length; symbol++) {
+                    if (stateReduces[symbol] != null) {
+                        outputStream.writeInt(symbol);
+                        outputStream.writeInt(ranks.get(stateReduces[symbol].getProductionId()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @throws IOException if the buffer does not hold an undamaged grammar of the current version
+     */
+    public static EnrichedGrammar read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a serialized grammar of version " + VERSION);
+        }
+        int length = buffer.getInt();
+        int expectedChecksum = buffer.getInt();
+        if (length != buffer.remaining()) {
+            throw new IOException("Serialized grammar of " + length + " bytes is truncated to " + buffer.remaining());
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.duplicate());
+        if ((int) checksum.getValue() != expectedChecksum) {
+            throw new IOException("Checksum mismatch of the serialized grammar");
+        }
+
+        String grammarName = readString(buffer);
+        String grammarPackage = readString(buffer);
+        int originalStartSymbolCode = buffer.getInt();
+        int startSymbolCode = buffer.getInt();
+        int nonTerminalsCount = buffer.getInt();
+        int symbolsCount = readCount(buffer, 2 * Integer.BYTES);
+        if (nonTerminalsCount <= 0 || nonTerminalsCount > symbolsCount) {
+            throw new IOException("Illegal non-terminals count: " + nonTerminalsCount);
+        }
+        checkIndex(originalStartSymbolCode, nonTerminalsCount);
+        checkIndex(startSymbolCode, nonTerminalsCount);
+
+        ArrayList<String> symbolNames = new ArrayList<>(symbolsCount);
+        ArrayList<ArrayList<Attribute>> symbolAttributes = new ArrayList<>(symbolsCount);
+        Map<String, String> terminalsMap = new HashMap<>();
+        for (int i = 0; i < symbolsCount; i++) {
+            String symbolName = readString(buffer);
+            symbolNames.add(symbolName);
+            if (i >= nonTerminalsCount) {
+                terminalsMap.put(symbolName, readString(buffer));
+            }
+
+            int attributesCount = readCount(buffer, 2 * Integer.BYTES);
+            ArrayList<Attribute> attributes = new ArrayList<>(attributesCount);
+            for (int j = 0; j < attributesCount; j++) {
+                String type = readString(buffer);
+                attributes.add(new Attribute(type, readString(buffer)));
+            }
+            symbolAttributes.add(attributes);
+        }
+
+        ArrayList<ArrayList<Production>> symbolProductions = new ArrayList<>(nonTerminalsCount);
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            symbolProductions.add(new ArrayList<>());
+        }
+        int productionsCount = readCount(buffer, 3 * Integer.BYTES);
+        ArrayList<Production> productions = new ArrayList<>(productionsCount);
+        int[] leftSides = new int[productionsCount];
+        for (int i = 0; i < productionsCount; i++) {
+            leftSides[i] = readIndex(buffer, nonTerminalsCount);
+
+            int rightSideLength = readCount(buffer, Integer.BYTES);
+            ArrayList<Integer> rightSide = new ArrayList<>(rightSideLength);
+            for (int j = 0; j < rightSideLength; j++) {
+                rightSide.add(readIndex(buffer, symbolsCount));
+            }
+            int actionsCount = readCount(buffer, Integer.BYTES);
+            ArrayList<String> actions = new ArrayList<>(actionsCount);
+            for (int j = 0; j < actionsCount; j++) {
+                actions.add(readString(buffer));
+            }
+
+            Production production = new Production(i, rightSide, actions);
+            productions.add(production);
+            symbolProductions.get(leftSides[i]).add(production);
+        }
+
+        Grammar grammar = new Grammar(grammarName, grammarPackage, originalStartSymbolCode, startSymbolCode, nonTerminalsCount, symbolProductions, terminalsMap);
+        EnrichedGrammar result = new EnrichedGrammar(grammar, symbolNames, symbolAttributes);
+
+        BitSet nullable = readBitSet(buffer);
+        BitSet[] firsts = new BitSet[nonTerminalsCount];
+        BitSet[] follows = new BitSet[nonTerminalsCount];
+        for (int i = 0; i < nonTerminalsCount; i++) {
+            firsts[i] = readBitSet(buffer);
+            follows[i] = readBitSet(buffer);
+        }
+        result.setGrammarInformation(new GrammarInformation(symbolsCount, nullable, firsts, follows));
+
+        Item[] completedItems = new Item[productionsCount];
+        for (int i = 0; i < productionsCount; i++) {
+            Production production = productions.get(i);
+            completedItems[i] = new Item(result, leftSides[i], production, production.getRightSide().size());
+        }
+
+        GrammarItems grammarItems = result.getGrammarItems();
+        Automaton.Type[] types = Automaton.Type.values();
+        int automataCount = readCount(buffer, 2 * Integer.BYTES);
+        for (int i = 0; i < automataCount; i++) {
+            Automaton.Type type = types[readIndex(buffer, types.length)];
+
+            int statesCount = readCount(buffer, 3 * Integer.BYTES);
+            ArrayList<Automaton.State> states = new ArrayList<>(statesCount);
+            ArrayList<Item[]> reduces = new ArrayList<>(statesCount);
+            for (int j = 0; j < statesCount; j++) {
+                int[] items = new int[readCount(buffer, 2 * Integer.BYTES)];
+                for (int k = 0; k < items.length; k++) {
+                    int rank = readIndex(buffer, productionsCount);
+                    items[k] = grammarItems.getItem(rank, readIndex(buffer, productions.get(rank).getRightSide().size() + 1));
+                }
+                int[] symbols = new int[readCount(buffer, 2 * Integer.BYTES)];
+                int[] targets = new int[symbols.length];
+                for (int k = 0; k < symbols.length; k++) {
+                    symbols[k] = readIndex(buffer, symbolsCount);
+                    targets[k] = readIndex(buffer, statesCount);
+                }
+                states.add(new Automaton.State(grammarItems, items, symbols, targets, symbolsCount));
+
+                Item[] stateReduces = new Item[symbolsCount + 1]; // EOF
+                int reducesCount = readCount(buffer, 2 * Integer.BYTES);
+                for (int k = 0; k < reducesCount; k++) {
+                    int symbol = readIndex(buffer, stateReduces.length);
+                    stateReduces[symbol] = completedItems[readIndex(buffer, productionsCount)];
+                }
+                reduces.add(stateReduces);
+            }
+            result.setAutomaton(new Automaton(type, states, reduces));
+        }
+
+        return result;
+    }
+
+    private static ArrayList<Production> getProductions(EnrichedGrammar grammar) {
+        ArrayList<Production> result = new ArrayList<>();
+        for (int i = 0; i < grammar.getNonTerminalsCount(); i++) {
+            result.addAll(grammar.getProductions(i));
+        }
+        result.sort(Comparator.comparingInt(Production::getId));
+        return result;
+    }
+
+    private static void writeString(DataOutputStream outputStream, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    /**
+     * @param elementSize the least number of bytes taken by an element
+     * @throws IOException if the count is negative or the remaining bytes cannot hold so many elements
+     */
+    private static int readCount(ByteBuffer buffer, int elementSize) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * elementSize > buffer.remaining()) {
+            throw new IOException("Illegal count " + count + " of " + buffer.remaining() + " remaining bytes");
+        }
+        return count;
+    }
+
+    private static int readIndex(ByteBuffer buffer, int bound) throws IOException {
+        int index = buffer.getInt();
+        checkIndex(index, bound);
+        return index;
+    }
+
+    private static void checkIndex(int index, int bound) throws IOException {
+        if (index < 0 || index >= bound) {
+            throw new IOException("Index " + index + " is out of bounds [0, " + bound + ")");
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBitSet(DataOutputStream outputStream, BitSet bitSet) throws IOException {
+        long[] words = bitSet.toLongArray();
+        outputStream.writeInt(words.length);
+        for (long word : words) {
+            outputStream.writeLong(word);
+        }
+    }
+
+    private static BitSet readBitSet(ByteBuffer buffer) throws IOException {
+        long[] words = new long[readCount(buffer, Long.BYTES)];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = buffer.getLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.spbau.kozlov.slr.gramar;
+
+import ru.spbau.kozlov.slr.gramar.model.Production;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LALR(1) lookaheads of the LR(0) automaton computed with the reads, includes and lookback relations
+ * over its non-terminal transitions (DeRemer, Pennello. Efficient Computation of LALR(1) Look-Ahead Sets).
+ *
+ * @author adkozlov
+ */
+final class LALRLookaheads {
+
+    private LALRLookaheads() {
+    }
+
+    /**
+     * @return the lookaheads of the items of the states, null for the items with the dot not last
+     */
+    static ArrayList<BitSet[]> getLookaheads(EnrichedGrammar enrichedGrammar, GrammarItems grammarItems, ArrayList<Automaton.State> states) {
+        GrammarInformation grammarInformation = enrichedGrammar.getGrammarInformation();
+        int nonTerminalsCount = enrichedGrammar.getNonTerminalsCount();
+        int symbolsCount = enrichedGrammar.getSymbolsCount();
+        int eofIndex = grammarInformation.getEOFIndex();
+
+        // non-terminal transitions (p, A), the transitions of a state are numbered consecutively in the order of symbols,
+        // so the number of (p, A) is the first number of p plus the index of the transition by A
+        ArrayList<Integer> transitionStates = new ArrayList<>();
+        ArrayList<Integer> transitionSymbols = new ArrayList<>();
+        int[] firstTransitions = new int[states.size()];
+        for (int i = 0; i < states.size(); i++) {
+            firstTransitions[i] = transitionStates.size();
+
+            Automaton.State state = states.get(i);
+            for (int j = 0; j < state.getTransitionsCount() && state.getTransitionSymbol(j) < nonTerminalsCount; j++) {
+                transitionStates.add(i);
+                transitionSymbols.add(state.getTransitionSymbol(j));
+            }
+        }
+        int transitionsCount = transitionStates.size();
+
+        // DR(p, A) and reads
+        BitSet[] sets = new BitSet[transitionsCount];
+        ArrayList<ArrayList<Integer>> reads = initRelation(transitionsCount);
+        for (int i = 0; i < transitionsCount; i++) {
+            int target = states.get(transitionStates.get(i)).getNext(transitionSymbols.get(i));
+            Automaton.State targetState = states.get(target);
+
+            sets[i] = new BitSet();
+            for (int j = 0; j < targetState.getTransitionsCount(); j++) {
+                int symbol = targetState.getTransitionSymbol(j);
+                if (symbol >= nonTerminalsCount) {
+                    sets[i].set(symbol);
+                } else if (grammarInformation.isNullable(symbol)) {
+                    reads.get(i).add(firstTransitions[target] + j);
+                }
+            }
+        }
+
+        int startSymbolCode = enrichedGrammar.getStartSymbolCode();
+        int initialTransition = firstTransitions[0] + states.get(0).getTransitionIndex(enrichedGrammar.getOriginalStartSymbolCode());
+        sets[initialTransition].set(eofIndex); // !start -> .S in the initial state
+
+        Digraph.traverse(reads, sets);
+
+        // includes and lookback
+        ArrayList<ArrayList<Integer>> includes = initRelation(transitionsCount);
+        ArrayList<Map<Integer, ArrayList<Integer>>> lookbacks = new ArrayList<>(states.size());
+        for (int i = 0; i < states.size(); i++) {
+            lookbacks.add(new HashMap<>());
+        }
+
+        for (int i = 0; i < transitionsCount; i++) {
+            int state = transitionStates.get(i);
+            int leftSide = transitionSymbols.get(i);
+
+            for (Production production : enrichedGrammar.getProductions(leftSide)) {
+                int firstItem = grammarItems.getItem(production.getId(), 0);
+                int length = production.getRightSide().size();
+                int[] path = new int[length + 1];
+                path[0] = state;
+                for (int j = 0; j < length; j++) {
+                    path[j + 1] = states.get(path[j]).getNext(grammarItems.getSymbolAfterDot(firstItem + j));
+                }
+
+                lookbacks.get(path[length])
+                        .computeIfAbsent(production.getId(), id -> new ArrayList<>())
+                        .add(i);
+
+                for (int j = length - 1; j >= 0; j--) {
+                    int symbol = grammarItems.getSymbolAfterDot(firstItem + j);
+                    if (enrichedGrammar.isTerminal(symbol)) {
+                        break;
+                    }
+
+                    includes.get(firstTransitions[path[j]] + states.get(path[j]).getTransitionIndex(symbol)).add(i);
+                    if (!grammarInformation.isNullable(symbol)) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < transitionsCount; i++) {
+            sets[i] = (BitSet) sets[i].clone(); // members of a reads component share their Read set
+        }
+        Digraph.traverse(includes, sets);
+
+        ArrayList<BitSet[]> result = new ArrayList<>(states.size());
+        for (int i = 0; i < states.size(); i++) {
+            int[] items = states.get(i).getPackedItems();
+            BitSet[] lookaheads = new BitSet[items.length];
+            for (int j = 0; j < items.length; j++) {
+                int item = items[j];
+                if (!grammarItems.dotIsLast(item)) {
+                    continue;
+                }
+
+                BitSet lookahead = new BitSet();
+                if (grammarItems.getLeftSide(item) == startSymbolCode) {
+                    lookahead.set(eofIndex);
+                } else {
+                    for (int transition : lookbacks.get(i).getOrDefault(grammarItems.getProductionId(item), new ArrayList<>())) {
+                        lookahead.or(sets[transition]);
+                    }
+                }
+                lookaheads[j] = lookahead;
+            }
+            result.add(lookaheads);
+        }
+
+        return result;
+    }
+
+    private static ArrayList<ArrayList<Integer>> initRelation(int size) {
+        ArrayList<ArrayList<Integer>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new ArrayList<>());
+        }
+
+        return result;
+    }
+}
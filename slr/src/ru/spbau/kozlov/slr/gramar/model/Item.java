@@ -33,6 +33,10 @@ public class Item implements Comparable<Item> {
         return production.getRightSide();
     }
 
+    public int getDot() {
+        return dot;
+    }
+
     public int getProductionId() {
         return production.getId();
     }
@@ -49,6 +53,21 @@ public class Item implements Comparable<Item> {
         return getRightSide().size() == dot;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        if (!(o instanceof Item)) return false;
+
+        Item that = (Item) o;
+        return production.equals(that.production) && dot == that.dot;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * production.hashCode() + dot;
+    }
+
     @Override
     public int compareTo(Item o) {
         int result = production.compareTo(o.production);
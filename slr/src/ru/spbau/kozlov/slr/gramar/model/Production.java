@@ -4,22 +4,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Production ids are numbers of the productions in their grammar.
+ *
  * @author adkozlov
  */
 public class Production implements Comparable<Production> {
 
-    public static final ArrayList<Production> PRODUCTION_LIST = new ArrayList<>();
-
     private final int id;
     private final ArrayList<Integer> rightSide;
     private final ArrayList<String> actions;
 
-    public Production(List<Integer> rightSide, ArrayList<String> actions) {
+    public Production(int id, List<Integer> rightSide, ArrayList<String> actions) {
+        this.id = id;
         this.rightSide = new ArrayList<>(rightSide);
         this.actions = actions;
-
-        id = PRODUCTION_LIST.size();
-        PRODUCTION_LIST.add(this);
     }
 
     public int getId() {
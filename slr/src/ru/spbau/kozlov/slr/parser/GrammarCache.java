@@ -0,0 +1,104 @@
+package ru.spbau.kozlov.slr.parser;
+
+import ru.spbau.kozlov.slr.gramar.Automaton;
+import ru.spbau.kozlov.slr.gramar.EnrichedGrammar;
+import ru.spbau.kozlov.slr.gramar.GrammarSerialization;
+import ru.spbau.kozlov.slr.gramar.exceptions.ReduceReduceConflictException;
+import ru.spbau.kozlov.slr.gramar.exceptions.ShiftReduceConflictException;
+import ru.spbau.kozlov.slr.parser.exceptions.UnexpectedEOFException;
+import ru.spbau.kozlov.slr.parser.exceptions.UnexpectedEOLException;
+import ru.spbau.kozlov.slr.parser.exceptions.UnexpectedTokenException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Directory of analyzed grammars and their automata keyed by the hash of the grammar file content.
+ * An unchanged grammar is read from the memory mapped cache file instead of being parsed and analyzed again.
+ *
+ * @author adkozlov
+ */
+public class GrammarCache {
+
+    private static final String CACHE_EXTENSION = ".slrc";
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final Path directory;
+
+    public GrammarCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the grammar with the automaton of the given type already built
+     */
+    public EnrichedGrammar getEnrichedGrammar(Path path, Automaton.Type type) throws IOException, UnexpectedEOLException, UnexpectedTokenException, UnexpectedEOFException, ShiftReduceConflictException, ReduceReduceConflictException {
+        Path cachePath = directory.resolve(getKey(Files.readAllBytes(path)) + CACHE_EXTENSION);
+
+        EnrichedGrammar enrichedGrammar = read(cachePath);
+        boolean isChanged = enrichedGrammar == null;
+        if (isChanged) {
+            enrichedGrammar = new GrammarParser(path).getEnrichedGrammar();
+        }
+
+        try {
+            if (!enrichedGrammar.isAutomatonBuilt(type)) {
+                isChanged = true;
+                enrichedGrammar.getAutomaton(type);
+            }
+        } finally {
+            if (isChanged) {
+                write(enrichedGrammar, cachePath);
+            }
+        }
+
+        return enrichedGrammar;
+    }
+
+    private static EnrichedGrammar read(Path cachePath) throws IOException {
+        if (!Files.isRegularFile(cachePath)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            return GrammarSerialization.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            return null; // stale or damaged cache file is rebuilt
+        }
+    }
+
+    private void write(EnrichedGrammar enrichedGrammar, Path cachePath) throws IOException {
+        Files.createDirectories(directory);
+        Path temporaryPath = Files.createTempFile(directory, null, CACHE_EXTENSION);
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+                GrammarSerialization.write(enrichedGrammar, outputStream);
+            }
+            Files.move(temporaryPath, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    private static String getKey(byte[] content) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+            messageDigest.update((byte) GrammarSerialization.VERSION);
+            StringBuilder stringBuilder = new StringBuilder();
+            for (byte b : messageDigest.digest(content)) {
+                stringBuilder.append(String.format("%02x", b));
+            }
+            return stringBuilder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -27,6 +27,7 @@ public class GrammarParser {
     private final ArrayList<ArrayList<Attribute>> symbolAttributes = new ArrayList<>();
     private final ArrayList<ArrayList<Production>> symbolProductions = new ArrayList<>();
     private final Map<String, String> terminalsMap = new HashMap<>();
+    private int productionsCount = 0;
 
     private Grammar grammar;
     private EnrichedGrammar enrichedGrammar;
@@ -72,7 +73,7 @@ public class GrammarParser {
         String startSymbolName = readProperty(grammarTokenizer, "start"); // start symbol
         int originalStartSymbolCode = symbolCodes.get(startSymbolName);
         symbolProductions.get(startSymbolCode).add(
-                new Production(Collections.singletonList(originalStartSymbolCode), new ArrayList<>()));
+                new Production(productionsCount++, Collections.singletonList(originalStartSymbolCode), new ArrayList<>()));
 
         return new Grammar(grammarName, grammarPackage, originalStartSymbolCode, startSymbolCode, nonTerminalsCount, symbolProductions, terminalsMap);
     }
@@ -141,7 +142,7 @@ public class GrammarParser {
             }
             grammarTokenizer.nextLine();
 
-            symbolProductions.get(leftSide).add(new Production(rightSide, actions));
+            symbolProductions.get(leftSide).add(new Production(productionsCount++, rightSide, actions));
         }
     }
 }